@@ -22,12 +22,20 @@
 
 package com.oracle2hsqldb;
 
+import java.io.Serializable;
 import java.util.*;
 
 /**
  * @author Moses Hohman
  */
-public class Column {
+public class Column implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    static final int PRIMARY_KEY_MEMBER = 1;
+    static final int PRIMARY_KEY = 2;
+    static final int UNIQUE_KEY_MEMBER = 4;
+    static final int UNIQUE = 8;
+
     private Table owner;
     private String name;
     private int type;
@@ -36,6 +44,11 @@ public class Column {
     private int precision;
     private Reference reference;
     private DefaultValue defaultValue;
+    // the roles above this column plays in its owner, as of the owner's modCount
+    private int roles;
+    private Table rolesOwner;
+    private int rolesModCount;
+    private boolean frozen;
 
     public Column(String name, int type, int size, int precision, boolean nullable) {
         this(name, type, size, precision, nullable, null);
@@ -71,6 +84,7 @@ public class Column {
     }
 
     public void owner(Table owner) {
+        checkNotFrozen();
         this.owner = owner;
     }
 
@@ -79,6 +93,7 @@ public class Column {
     }
 
     public void reference(Reference reference) {
+        checkNotFrozen();
         this.reference = reference;
     }
 
@@ -87,24 +102,28 @@ public class Column {
     }
 
     public boolean isPrimaryKey() {
-        return isPrimaryKeyMember() && owner.primaryKey().columns().size()==1;
+        return hasRole(PRIMARY_KEY);
     }
 
     public boolean isPrimaryKeyMember() {
-        if (owner==null) return false;
-        if (owner.primaryKey()==null) return false;
-        return owner.primaryKey().columns().contains(this);
+        return hasRole(PRIMARY_KEY_MEMBER);
     }
 
+    /**
+     * @return whether one of the owner's indexes is on this column alone
+     */
     public boolean isUnique() {
-        if (!isUniqueKeyMember()) return false;
-        for(Iterator constraints = uniqueConstraints().iterator(); constraints.hasNext();) {
-            Index uniqueConstraint = (Index) constraints.next();
-            if (uniqueConstraint.columns().size()==1) {
-                return true;
-            }
+        return hasRole(UNIQUE);
+    }
+
+    private boolean hasRole(int role) {
+        if (owner==null) return false;
+        if (rolesOwner != owner || rolesModCount != owner.modCount()) {
+            roles = owner.rolesOf(this);
+            rolesOwner = owner;
+            rolesModCount = owner.modCount();
         }
-        return false;
+        return (roles & role) != 0;
     }
 
     public String toString() {
@@ -121,7 +140,7 @@ public class Column {
     }
 
     public boolean isUniqueKeyMember() {
-        return uniqueConstraints().size() > 0;
+        return hasRole(UNIQUE_KEY_MEMBER);
     }
 
     public List uniqueConstraints() {
@@ -129,8 +148,9 @@ public class Column {
     }
 
     public void indexedBy(Index index) {
+        checkNotFrozen();
         if (owner()==null) throw new IllegalStateException("column must be added to table before calling constrainBy()");
-        Index tableIndex = owner().findIndex(index.name());
+        Index tableIndex = owner().index(index.name());
         if (tableIndex==null) {
             owner().addIndex(index);
             tableIndex = index;
@@ -138,6 +158,21 @@ public class Column {
         tableIndex.addColumn(this);
     }
 
+    /**
+     * @return a copy of this column without its owner and reference
+     */
+    Column copy() {
+        return new Column(name, type, size, precision, isNullable, defaultValue);
+    }
+
+    void freeze() {
+        frozen = true;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) throw new IllegalStateException("column " + this + " is frozen");
+    }
+
     public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof Column)) return false;
@@ -0,0 +1,158 @@
+/*
+ * Schemamule, a library for automating database schema tasks
+ * Copyright (C) 2006, Moses M. Hohman and Rhett Sutphin
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St., 5th Floor, Boston, MA  02110-1301
+
+ * To contact the authors, send email to:
+ * { mmhohman OR rsutphin } AT sourceforge DOT net
+ */
+
+package com.oracle2hsqldb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Hands out the tables of a concurrent copy to the threads doing it, biggest first: scheduling the longest
+ * jobs first keeps one big table from starting last and running on alone.  A table split into chunks has
+ * them handed out one at a time, each sized as its share of the table, to whichever thread asks next; the
+ * table is done once they all are.  With parents first, a table is only handed out once every table it
+ * references is done, so the target's foreign keys are satisfied.  Tables in a foreign key cycle only wait
+ * for the ones before them in the graph's order, they can't all wait for each other.
+ */
+class CopyScheduler {
+    private final Map<Table, Integer> order = new HashMap<Table, Integer>();
+    private final Map<Table, Integer> waitingFor = new HashMap<Table, Integer>();
+    private final Map<Table, List<Table>> dependents = new HashMap<Table, List<Table>>();
+    private final Map<Table, List<TableChunk>> chunks;
+    private final Map<Table, Integer> chunksLeft = new HashMap<Table, Integer>();
+    private final Map<TableChunk, Integer> position = new IdentityHashMap<TableChunk, Integer>();
+    private final PriorityQueue<TableChunk> ready;
+    private int remaining;
+    private boolean failed = false;
+
+    /**
+     * @param tables the tables to copy, parents before children
+     * @param chunks the chunks of the tables which have been split
+     */
+    public CopyScheduler(List<Table> tables, Map<Table, List<TableChunk>> chunks, ForeignKeyGraph graph, boolean parentsFirst) {
+        this.chunks = chunks;
+        for (Table table : tables) {
+            order.put(table, order.size());
+        }
+        ready = new PriorityQueue<TableChunk>(Math.max(1, tables.size()), new Comparator<TableChunk>() {
+            public int compare(TableChunk a, TableChunk b) {
+                long sizeA = size(a);
+                long sizeB = size(b);
+                if (sizeA != sizeB) return sizeA > sizeB ? -1 : 1;
+                if (a.table() != b.table()) return order.get(a.table()) - order.get(b.table());
+                return position.get(a) - position.get(b);
+            }
+        });
+        for (Table table : tables) {
+            int parents = 0;
+            if (parentsFirst) {
+                for (Table parent : graph.getParents(table)) {
+                    Integer position = order.get(parent);
+                    if (position == null || position > order.get(table)) continue;
+                    parents++;
+                    List<Table> children = dependents.get(parent);
+                    if (children == null) dependents.put(parent, children = new ArrayList<Table>());
+                    children.add(table);
+                }
+            }
+            if (parents == 0) {
+                makeReady(table);
+            } else {
+                waitingFor.put(table, parents);
+            }
+            remaining += chunksOf(table).size();
+        }
+    }
+
+    private List<TableChunk> chunksOf(Table table) {
+        List<TableChunk> tableChunks = chunks.get(table);
+        return tableChunks == null ? Collections.singletonList(new TableChunk(table)) : tableChunks;
+    }
+
+    private void makeReady(Table table) {
+        List<TableChunk> tableChunks = chunksOf(table);
+        chunksLeft.put(table, tableChunks.size());
+        for (TableChunk chunk : tableChunks) {
+            position.put(chunk, position.size());
+            ready.add(chunk);
+        }
+    }
+
+    /**
+     * @return the chunk's share of its table's size, or -1 if the table has no statistics
+     */
+    private long size(TableChunk chunk) {
+        Long size = chunk.table().estimatedSize();
+        return size == null ? -1 : size / chunksOf(chunk.table()).size();
+    }
+
+    /**
+     * Waits until a table or chunk can be copied.
+     *
+     * @return the next chunk of the biggest table which can be copied now, or null once every chunk has
+     *      been handed out or a copy has failed
+     */
+    public synchronized TableChunk next() throws InterruptedException {
+        while (ready.isEmpty() && remaining > 0 && !failed) {
+            wait();
+        }
+        if (failed || ready.isEmpty()) return null;
+        return ready.poll();
+    }
+
+    /**
+     * Records that a chunk has been copied, readying the tables waiting for its table if that was the last.
+     */
+    public synchronized void done(TableChunk chunk) {
+        remaining--;
+        Table table = chunk.table();
+        int left = chunksLeft.get(table) - 1;
+        chunksLeft.put(table, left);
+        List<Table> children = left > 0 ? null : dependents.remove(table);
+        if (children != null) {
+            for (Table child : children) {
+                int parents = waitingFor.get(child) - 1;
+                if (parents == 0) {
+                    waitingFor.remove(child);
+                    makeReady(child);
+                } else {
+                    waitingFor.put(child, parents);
+                }
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * Stops handing out tables.
+     */
+    public synchronized void failed() {
+        failed = true;
+        notifyAll();
+    }
+}
@@ -0,0 +1,563 @@
+/*
+ * Schemamule, a library for automating database schema tasks
+ * Copyright (C) 2006, Moses M. Hohman and Rhett Sutphin
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St., 5th Floor, Boston, MA  02110-1301
+
+ * To contact the authors, send email to:
+ * { mmhohman OR rsutphin } AT sourceforge DOT net
+ */
+
+package com.oracle2hsqldb;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.apache.log4j.Logger;
+
+import com.oracle2hsqldb.dialect.Dialect;
+import com.oracle2hsqldb.dialect.GenericDialect;
+
+/**
+ * Copies the rows of a schema's tables from one database into tables of the same name and shape in
+ * another, usually ones {@link SchemaWriter} created.  Rows are streamed: the source query is forward only
+ * and fetched a few rows at a time, and the rows go into the target in batches of prepared inserts, each
+ * batch committed on its own, so a table is never held in memory.
+ * <p>
+ * Copied concurrently, big tables can be split into {@link TableChunk chunks} by the source's dialect.
+ * The chunks join the queue the threads take their work from, and each is copied in a transaction of its
+ * own, so it can be retried on its own.
+ */
+public class DataCopier {
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final int DEFAULT_RETRIES = 2;
+
+    protected Logger log = Logger.getLogger(getClass());
+
+    private DataSource source;
+    private DataSource target;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int threads = 1;
+    private boolean parentsFirst = false;
+    private long chunkSize = 0;
+    private int retries = DEFAULT_RETRIES;
+    private Dialect dialect = new GenericDialect();
+    private boolean snapshot = false;
+    private Subset subset;
+
+    public DataCopier(DataSource source, DataSource target) {
+        this.source = source;
+        this.target = target;
+    }
+
+    /**
+     * How many rows the source driver fetches per round trip.
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * How many rows go into the target per batch, and so per commit.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Copy this many tables at once, each thread over its own pair of connections.  The biggest tables
+     * (by their statistics) are started first.
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Only start copying a table once the tables it references are complete, because the target
+     * enforces its foreign keys.  Off by default, as {@link SchemaWriter} creates no foreign keys and
+     * holding tables back costs parallelism; copying one table at a time always goes parents first.  Either
+     * way the parents are found from the columns' references, so the schema must have been read with its
+     * foreign keys.
+     */
+    public void setParentsFirst(boolean parentsFirst) {
+        this.parentsFirst = parentsFirst;
+    }
+
+    /**
+     * Split the tables whose statistics put them above this many bytes into chunks of about this size, to
+     * be copied concurrently.  Off unless set.
+     */
+    public void setChunkSize(long chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * How many more times to try copying a table or chunk whose copy failed.  A chunk's rows are rolled back
+     * before it's retried; a whole table's rows are deleted.  A snapshot copied in one transaction, for want
+     * of flashback queries, is not retried, as its tables can't be read again as of the same moment.
+     */
+    public void setRetries(int retries) {
+        this.retries = retries;
+    }
+
+    /**
+     * Read every table of a schema as it was when its copy started, however many threads read it and
+     * however long they take.  Uses flashback queries where the dialect has them (AS OF SCN on Oracle),
+     * and otherwise reads the tables one at a time in a single serializable transaction.  Off by default.
+     */
+    public void setSnapshot(boolean snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Only copy the rows the subset selects from its driving tables, and the rows of the tables they
+     * reference which those rows need, and so on up.  Other tables are left empty.  The references are the
+     * columns', so the schema must have been read with its foreign keys.
+     */
+    public void setSubset(Subset subset) {
+        this.subset = subset;
+    }
+
+    /**
+     * The source database's dialect, which splits big tables into chunks and takes snapshots.  Defaults
+     * to a GenericDialect.
+     */
+    public void setDialect(Dialect dialect) {
+        this.dialect = dialect;
+    }
+
+    Dialect getDialect() {
+        return dialect;
+    }
+
+    int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * Copies every table of the schema.  Views are skipped, their rows come from the tables they select
+     * from.
+     *
+     * @return the number of rows copied
+     */
+    public long copy(Schema schema) throws SQLException {
+        ForeignKeyGraph graph = new ForeignKeyGraph(schema);
+        List<Table> tables = new ArrayList<Table>();
+        for (Table table : graph.topologicalOrder()) {
+            if (table.type() == Table.Type.TABLE) {
+                tables.add(table);
+            }
+        }
+        long rows;
+        String clause = snapshot ? dialect.getSnapshotClause(source) : null;
+        if (!snapshot) {
+            rows = copyTables(schema, tables, graph, null);
+        } else if (clause == null) {
+            log.warn(dialect.getClass().getSimpleName() + " has no flashback queries, copying with one connection in one transaction for a consistent snapshot");
+            rows = copyInOneTransaction(schema, tables);
+        } else {
+            log.info("Reading every table " + clause);
+            rows = copyTables(schema, tables, graph, clause);
+        }
+        log.info("Copied " + rows + " rows of schema " + schema.name());
+        return rows;
+    }
+
+    /**
+     * @param asOf the snapshot clause every query reads as of, or null
+     */
+    private long copyTables(Schema schema, List<Table> tables, ForeignKeyGraph graph, String asOf) throws SQLException {
+        Map<Table, List<TableChunk>> chunks;
+        if (subset != null) {
+            Connection from = source.getConnection();
+            try {
+                chunks = selectSubset(from, schema, asOf);
+            } finally {
+                from.close();
+            }
+            tables.retainAll(chunks.keySet());
+        } else {
+            chunks = split(schema.name(), tables);
+        }
+        if ((threads > 1 && tables.size() > 1) || !chunks.isEmpty()) {
+            return copyConcurrently(schema.name(), tables, chunks, graph, asOf);
+        }
+        long rows = 0;
+        Connection[] connections = new Connection[2];
+        try {
+            for (Table table : tables) {
+                rows += copyWithRetries(connections, schema.name(), new TableChunk(table), asOf);
+            }
+        } finally {
+            close(connections);
+        }
+        return rows;
+    }
+
+    private Map<Table, List<TableChunk>> split(String schemaName, List<Table> tables) throws SQLException {
+        Map<Table, List<TableChunk>> chunks = new HashMap<Table, List<TableChunk>>();
+        if (chunkSize <= 0) return chunks;
+        for (Table table : tables) {
+            Long size = table.estimatedSize();
+            if (size == null || size <= chunkSize) continue;
+            List<TableChunk> tableChunks = dialect.getChunks(source, schemaName, table, (int) Math.min(Integer.MAX_VALUE, (size + chunkSize - 1) / chunkSize));
+            log.info("Split " + table.name() + " into " + tableChunks.size() + " chunks");
+            chunks.put(table, tableChunks);
+        }
+        return chunks;
+    }
+
+    private Map<Table, List<TableChunk>> selectSubset(Connection from, Schema schema, String asOf) throws SQLException {
+        Map<Table, List<TableChunk>> chunks = new SubsetSelector(this, from, schema.name(), asOf).select(subset, schema);
+        log.info("Subset " + chunks.keySet() + " of schema " + schema.name());
+        return chunks;
+    }
+
+    /**
+     * Reads every table in one serializable, read only transaction, the consistent snapshot a database
+     * without flashback queries can give.
+     */
+    private long copyInOneTransaction(Schema schema, List<Table> tables) throws SQLException {
+        Connection from = source.getConnection();
+        try {
+            Connection to = target.getConnection();
+            try {
+                from.setAutoCommit(false);
+                from.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+                from.setReadOnly(true);
+                Map<Table, List<TableChunk>> chunks = subset == null ? null : selectSubset(from, schema, null);
+                long rows = 0;
+                for (Table table : tables) {
+                    if (chunks == null) {
+                        rows += copyRows(from, to, schema.name(), new TableChunk(table), null);
+                    } else if (chunks.containsKey(table)) {
+                        for (TableChunk chunk : chunks.get(table)) {
+                            rows += copyRows(from, to, schema.name(), chunk, null);
+                        }
+                    }
+                }
+                from.commit();
+                return rows;
+            } finally {
+                to.close();
+            }
+        } finally {
+            from.close();
+        }
+    }
+
+    private long copyConcurrently(final String schemaName, List<Table> tables, Map<Table, List<TableChunk>> chunks, ForeignKeyGraph graph, final String asOf) throws SQLException {
+        int count = tables.size();
+        for (List<TableChunk> tableChunks : chunks.values()) {
+            count += tableChunks.size() - 1;
+        }
+        final CopyScheduler scheduler = new CopyScheduler(tables, chunks, graph, parentsFirst);
+        int workers = Math.min(threads, count);
+        log.info("Copying " + count + " tables and chunks with " + workers + " threads ...");
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        boolean copied = false;
+        try {
+            List<Future<Long>> results = new ArrayList<Future<Long>>();
+            for (int i = 0; i < workers; i++) {
+                results.add(executor.submit(new Callable<Long>() {
+                    public Long call() throws Exception {
+                        try {
+                            return copyScheduled(schemaName, scheduler, asOf);
+                        } catch (Exception e) {
+                            scheduler.failed();
+                            throw e;
+                        } catch (Error e) {
+                            scheduler.failed();
+                            throw e;
+                        }
+                    }
+                }));
+            }
+            long rows = 0;
+            for (Future<Long> result : results) {
+                rows += get(result);
+            }
+            copied = true;
+            return rows;
+        } finally {
+            // stop handing out chunks and wait for the ones being copied, so no worker is still writing to
+            // the target once this returns or throws
+            if (!copied) scheduler.failed();
+            executor.shutdown();
+            awaitTermination(executor);
+        }
+    }
+
+    private void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.MINUTES)) break;
+                log.info("Waiting for the copying threads to finish ...");
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private long copyScheduled(String schemaName, CopyScheduler scheduler, String asOf) throws SQLException, InterruptedException {
+        long rows = 0;
+        Connection[] connections = new Connection[2];
+        try {
+            for (TableChunk chunk = scheduler.next(); chunk != null; chunk = scheduler.next()) {
+                rows += copyWithRetries(connections, schemaName, chunk, asOf);
+                scheduler.done(chunk);
+            }
+            return rows;
+        } finally {
+            close(connections);
+        }
+    }
+
+    /**
+     * @param connections the source and target connections to copy over, opened if null; they are replaced
+     *      after a failure, it may have been theirs
+     */
+    private long copyWithRetries(Connection[] connections, String schemaName, TableChunk chunk, String asOf) throws SQLException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                if (connections[0] == null) connections[0] = source.getConnection();
+                if (connections[1] == null) connections[1] = target.getConnection();
+                if (attempt > 0 && chunk.isWholeTable()) {
+                    // its batches were committed as they went
+                    deleteRows(connections[1], schemaName, chunk.table());
+                }
+                return copyRows(connections[0], connections[1], schemaName, chunk, asOf);
+            } catch (SQLException e) {
+                if (attempt >= retries) throw e;
+                log.warn("Copying " + chunk + " failed, retrying: " + e.getMessage());
+                close(connections);
+            }
+        }
+    }
+
+    private void deleteRows(Connection to, String schemaName, Table table) throws SQLException {
+        boolean autoCommit = to.getAutoCommit();
+        to.setAutoCommit(true);
+        Statement delete = to.createStatement();
+        try {
+            log.info("Deleted " + delete.executeUpdate("DELETE FROM " + qualifiedName(schemaName, table)) + " rows of " + table.name() + " before copying it again");
+        } finally {
+            delete.close();
+            to.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void close(Connection[] connections) {
+        for (int i = 0; i < connections.length; i++) {
+            if (connections[i] == null) continue;
+            try {
+                connections[i].close();
+            } catch (SQLException e) {
+                log.warn("Could not close connection: " + e.getMessage());
+            }
+            connections[i] = null;
+        }
+    }
+
+    private static <T> T get(Future<T> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SchemaException("interrupted while copying rows", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) throw (SQLException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new SchemaException(cause);
+        }
+    }
+
+    /**
+     * @param schemaName the schema the table is in, in both databases, or null for the connections' default
+     * @return the number of rows copied
+     */
+    public long copy(String schemaName, Table table) throws SQLException {
+        Connection from = source.getConnection();
+        try {
+            Connection to = target.getConnection();
+            try {
+                return copyRows(from, to, schemaName, new TableChunk(table), null);
+            } finally {
+                to.close();
+            }
+        } finally {
+            from.close();
+        }
+    }
+
+    /**
+     * Copies the rows of a chunk in one transaction, or of a whole table a batch at a time.
+     *
+     * @param asOf the snapshot clause to read the rows as of, or null for the current ones
+     * @return the number of rows copied
+     */
+    protected long copyRows(Connection from, Connection to, String schemaName, TableChunk chunk, String asOf) throws SQLException {
+        Table table = chunk.table();
+        List<Column> columns = table.columns();
+        List<Object> args = chunk.args();
+        String select = selectSql(schemaName, chunk, columns, asOf);
+        String insert = insertSql(schemaName, table);
+        if (log.isDebugEnabled()) log.debug("Copying rows with " + select + " into " + insert);
+
+        boolean autoCommit = to.getAutoCommit();
+        to.setAutoCommit(false);
+        PreparedStatement query = from.prepareStatement(select, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        try {
+            query.setFetchSize(fetchSize);
+            for (int i = 0; i < args.size(); i++) {
+                query.setObject(i + 1, args.get(i));
+            }
+            ResultSet rows = query.executeQuery();
+            PreparedStatement inserts = to.prepareStatement(insert);
+            try {
+                long count = 0;
+                int batched = 0;
+                while (rows.next()) {
+                    for (int i = 0; i < columns.size(); i++) {
+                        int type = columns.get(i).type();
+                        Object value = getValue(rows, i + 1, type);
+                        if (value == null) {
+                            inserts.setNull(i + 1, type);
+                        } else {
+                            inserts.setObject(i + 1, value);
+                        }
+                    }
+                    inserts.addBatch();
+                    count++;
+                    if (++batched == batchSize) {
+                        inserts.executeBatch();
+                        if (chunk.isWholeTable()) to.commit();
+                        batched = 0;
+                    }
+                }
+                if (batched > 0) {
+                    inserts.executeBatch();
+                }
+                to.commit();
+                log.info("Copied " + count + " rows of " + chunk);
+                return count;
+            } catch (SQLException e) {
+                try {
+                    to.rollback();
+                } catch (SQLException rollbackFailure) {
+                    log.warn("Could not roll back " + chunk + ": " + rollbackFailure.getMessage());
+                }
+                throw e;
+            } finally {
+                inserts.close();
+                rows.close();
+            }
+        } finally {
+            query.close();
+            to.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Reads a column value in a form the target driver can take: LOBs are read out, since their locators
+     * belong to the source connection, and dates and timestamps are read as java.sql.Timestamp rather than
+     * as the driver's own classes.
+     */
+    protected Object getValue(ResultSet rows, int index, int type) throws SQLException {
+        switch (type) {
+            case Types.CLOB:
+            case Types.LONGVARCHAR:
+                return rows.getString(index);
+            case Types.BLOB:
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+                return rows.getBytes(index);
+            case Types.DATE:
+            case Types.TIMESTAMP:
+                return rows.getTimestamp(index);
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                return rows.getBigDecimal(index);
+            default:
+                return rows.getObject(index);
+        }
+    }
+
+    /**
+     * @param asOf the snapshot clause to read the rows as of, or null for the current ones
+     * @return a query for the given columns of the chunk's rows
+     */
+    protected String selectSql(String schemaName, TableChunk chunk, List<Column> columns, String asOf) {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        appendColumnNames(columns, sql);
+        sql.append(" FROM ").append(qualifiedName(schemaName, chunk.table()));
+        if (chunk.sample() != null) {
+            sql.append(" ").append(chunk.sample());
+        }
+        if (asOf != null) {
+            sql.append(" ").append(asOf);
+        }
+        if (chunk.condition() != null) {
+            sql.append(" WHERE ").append(chunk.condition());
+        }
+        return sql.toString();
+    }
+
+    protected String insertSql(String schemaName, Table table) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(qualifiedName(schemaName, table)).append(" (");
+        appendColumnNames(table.columns(), sql);
+        sql.append(") VALUES (");
+        for (int i = 0; i < table.columns().size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        return sql.append(")").toString();
+    }
+
+    protected static String qualifiedName(String schemaName, Table table) {
+        return schemaName == null ? table.name() : schemaName + "." + table.name();
+    }
+
+    private static void appendColumnNames(List<Column> columns, StringBuilder sql) {
+        boolean first = true;
+        for (Column column : columns) {
+            if (!first) sql.append(", ");
+            sql.append(column.name());
+            first = false;
+        }
+    }
+}
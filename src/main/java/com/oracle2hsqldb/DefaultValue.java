@@ -22,11 +22,17 @@
 
 package com.oracle2hsqldb;
 
+import java.io.Serializable;
+
 /**
  * @author Moses Hohman
  */
-public class DefaultValue {
+public class DefaultValue implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     public static final DefaultValue NOW = new DefaultValue(null, false) {
+        private static final long serialVersionUID = 1L;
+
         public String getValue() {
             throw new UnsupportedOperationException("getValue() not supported for NOW");
         }
@@ -51,4 +57,9 @@ public class DefaultValue {
     public boolean isString() {
         return isString;
     }
+
+    protected Object readResolve() {
+        // keeps NOW a singleton
+        return getClass() == DefaultValue.class ? this : NOW;
+    }
 }
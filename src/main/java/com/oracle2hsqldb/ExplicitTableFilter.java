@@ -0,0 +1,47 @@
+/*
+ * Schemamule, a library for automating database schema tasks
+ * Copyright (C) 2006, Moses M. Hohman and Rhett Sutphin
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St., 5th Floor, Boston, MA  02110-1301
+
+ * To contact the authors, send email to:
+ * { mmhohman OR rsutphin } AT sourceforge DOT net
+ */
+
+package com.oracle2hsqldb;
+
+import java.util.Set;
+
+/**
+ * A filter that is defined by lists of table names and name patterns, which a dialect can push
+ * down into its metadata queries.  If any tables are included, only those are accepted; otherwise
+ * every table except the excluded ones is.  {@link #accept} must still be called on the results.
+ */
+public interface ExplicitTableFilter extends TableFilter {
+    Set<String> getIncludedTables();
+
+    Set<String> getExcludedTables();
+
+    /**
+     * @return prefixes such that every table included by a pattern starts with one of them (empty if
+     * no patterns are included), or null if some included pattern has no literal prefix
+     */
+    Set<String> getIncludedPrefixes();
+
+    /**
+     * @return prefixes such that every table starting with one of them is excluded
+     */
+    Set<String> getExcludedPrefixes();
+}
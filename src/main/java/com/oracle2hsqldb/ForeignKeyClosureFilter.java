@@ -0,0 +1,114 @@
+/*
+ * Schemamule, a library for automating database schema tasks
+ * Copyright (C) 2006, Moses M. Hohman and Rhett Sutphin
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St., 5th Floor, Boston, MA  02110-1301
+
+ * To contact the authors, send email to:
+ * { mmhohman OR rsutphin } AT sourceforge DOT net
+ */
+
+package com.oracle2hsqldb;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Accepts the tables another filter accepts, plus every table they reference through foreign keys
+ * (transitively), so the tables read form a consistent subset of the schema.  Optionally the tables
+ * referencing them are added too, up to a given number of steps away, along with their own parents.
+ */
+public class ForeignKeyClosureFilter implements ExplicitTableFilter {
+    private Set<String> tableNames = new LinkedHashSet<String>();
+
+    /**
+     * @param filter selects the tables to start from
+     * @param allTableNames every table in the schema
+     * @param foreignKeys the foreign keys between them, e.g. from {@link com.oracle2hsqldb.dialect.Dialect#getForeignKeys}
+     * @param childDepth how many steps to follow foreign keys from referenced to referencing tables; 0 for none
+     */
+    public ForeignKeyClosureFilter(TableFilter filter, Collection<String> allTableNames, List<Reference.Spec> foreignKeys, int childDepth) {
+        Map<String, Set<String>> parents = new HashMap<String, Set<String>>();
+        Map<String, Set<String>> children = new HashMap<String, Set<String>>();
+        for (Reference.Spec foreignKey : foreignKeys) {
+            if (foreignKey.getReferencedTableName() == null) continue;
+            edges(parents, foreignKey.getTableName()).add(foreignKey.getReferencedTableName());
+            edges(children, foreignKey.getReferencedTableName()).add(foreignKey.getTableName());
+        }
+
+        for (String tableName : allTableNames) {
+            if (filter.accept(new Table(tableName))) {
+                tableNames.add(tableName);
+            }
+        }
+        walk(children, childDepth);
+        walk(parents, Integer.MAX_VALUE);
+    }
+
+    private static Set<String> edges(Map<String, Set<String>> graph, String tableName) {
+        Set<String> edges = graph.get(tableName);
+        if (edges == null) {
+            edges = new LinkedHashSet<String>();
+            graph.put(tableName, edges);
+        }
+        return edges;
+    }
+
+    /**
+     * Breadth first from every table accepted so far, adding the tables reached in up to maxDepth steps.
+     */
+    private void walk(Map<String, Set<String>> graph, int maxDepth) {
+        List<String> frontier = new LinkedList<String>(tableNames);
+        for (int depth = 0; depth < maxDepth && !frontier.isEmpty(); depth++) {
+            List<String> next = new LinkedList<String>();
+            for (String tableName : frontier) {
+                Set<String> edges = graph.get(tableName);
+                if (edges == null) continue;
+                for (String reached : edges) {
+                    if (tableNames.add(reached)) {
+                        next.add(reached);
+                    }
+                }
+            }
+            frontier = next;
+        }
+    }
+
+    public boolean accept(Table table) {
+        return tableNames.contains(table.name());
+    }
+
+    public Set<String> getIncludedTables() {
+        return Collections.unmodifiableSet(tableNames);
+    }
+
+    public Set<String> getExcludedTables() {
+        return Collections.emptySet();
+    }
+
+    public Set<String> getIncludedPrefixes() {
+        return Collections.emptySet();
+    }
+
+    public Set<String> getExcludedPrefixes() {
+        return Collections.emptySet();
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Schemamule, a library for automating database schema tasks
+ * Copyright (C) 2006, Moses M. Hohman and Rhett Sutphin
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St., 5th Floor, Boston, MA  02110-1301
+
+ * To contact the authors, send email to:
+ * { mmhohman OR rsutphin } AT sourceforge DOT net
+ */
+
+package com.oracle2hsqldb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The foreign key dependencies between the tables of a schema, as given by their columns'
+ * {@link Column#reference() references}: a table depends on every other table it references.
+ * <p>
+ * Tables are ordered parents first, in {@link #levels() levels} of tables which don't depend on each
+ * other, so each level can be created or loaded in parallel once the ones before it are done.  Tables
+ * in a foreign key cycle can't be ordered among themselves; they share a level, and
+ * {@link #getCycles()} lists them.  Views aren't parsed, so each one is put in a level of its own
+ * after all the tables and the views before it, as they were read.
+ */
+public class ForeignKeyGraph {
+    private List<Table> tables = new ArrayList<Table>();
+    private List<Table> views = new ArrayList<Table>();
+    private Map<Table, Integer> indexes = new HashMap<Table, Integer>();
+    // parents[i] are the indexes of the tables tables[i] references, children[i] those referencing it
+    private int[][] parents;
+    private int[][] children;
+    private boolean[] selfReferencing;
+    private List<int[]> components;
+    private int[] componentOf;
+    private List<List<Table>> levels;
+
+    public ForeignKeyGraph(Schema schema) {
+        for (Table table : schema.tables()) {
+            if (table instanceof View) {
+                views.add(table);
+            } else {
+                indexes.put(table, tables.size());
+                tables.add(table);
+            }
+        }
+        buildEdges();
+        findComponents();
+        buildLevels();
+    }
+
+    private void buildEdges() {
+        List<List<Integer>> parentLists = new ArrayList<List<Integer>>();
+        List<List<Integer>> childLists = new ArrayList<List<Integer>>();
+        for (int i = 0; i < tables.size(); i++) {
+            parentLists.add(new ArrayList<Integer>());
+            childLists.add(new ArrayList<Integer>());
+        }
+        selfReferencing = new boolean[tables.size()];
+        for (int i = 0; i < tables.size(); i++) {
+            for (Column column : tables.get(i).columns()) {
+                Reference reference = column.reference();
+                if (reference == null || reference.refersTo() == null) continue;
+                Integer parent = indexes.get(reference.refersTo().owner());
+                if (parent == null) continue; // outside this schema
+                if (parent.intValue() == i) {
+                    selfReferencing[i] = true;
+                } else if (!parentLists.get(i).contains(parent)) {
+                    parentLists.get(i).add(parent);
+                    childLists.get(parent.intValue()).add(i);
+                }
+            }
+        }
+        parents = toArrays(parentLists);
+        children = toArrays(childLists);
+    }
+
+    private static int[][] toArrays(List<List<Integer>> lists) {
+        int[][] result = new int[lists.size()][];
+        for (int i = 0; i < result.length; i++) {
+            List<Integer> list = lists.get(i);
+            result[i] = new int[list.size()];
+            for (int j = 0; j < result[i].length; j++) {
+                result[i][j] = list.get(j).intValue();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Tarjan's strongly connected components algorithm, iterative so that long reference chains can't
+     * overflow the stack.  Since edges point from child to parent, a component is completed only after
+     * all the components it references, so they come out parents first.
+     */
+    private void findComponents() {
+        int n = tables.size();
+        int[] index = new int[n];
+        int[] lowLink = new int[n];
+        boolean[] onStack = new boolean[n];
+        Arrays.fill(index, -1);
+        int[] stack = new int[n];
+        int stackSize = 0;
+        int[] callStack = new int[n];
+        int[] nextEdge = new int[n];
+        int nextIndex = 0;
+        components = new ArrayList<int[]>();
+        componentOf = new int[n];
+
+        for (int root = 0; root < n; root++) {
+            if (index[root] != -1) continue;
+            int depth = 0;
+            callStack[depth] = root;
+            index[root] = lowLink[root] = nextIndex++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            while (depth >= 0) {
+                int node = callStack[depth];
+                if (nextEdge[node] < parents[node].length) {
+                    int parent = parents[node][nextEdge[node]++];
+                    if (index[parent] == -1) {
+                        index[parent] = lowLink[parent] = nextIndex++;
+                        stack[stackSize++] = parent;
+                        onStack[parent] = true;
+                        callStack[++depth] = parent;
+                    } else if (onStack[parent]) {
+                        lowLink[node] = Math.min(lowLink[node], index[parent]);
+                    }
+                } else {
+                    if (lowLink[node] == index[node]) {
+                        int start = stackSize;
+                        do {
+                            start--;
+                        } while (stack[start] != node);
+                        int[] component = Arrays.copyOfRange(stack, start, stackSize);
+                        Arrays.sort(component);
+                        for (int member : component) {
+                            onStack[member] = false;
+                            componentOf[member] = components.size();
+                        }
+                        components.add(component);
+                        stackSize = start;
+                    }
+                    depth--;
+                    if (depth >= 0) {
+                        int caller = callStack[depth];
+                        lowLink[caller] = Math.min(lowLink[caller], lowLink[node]);
+                    }
+                }
+            }
+        }
+    }
+
+    private void buildLevels() {
+        int[] componentLevel = new int[components.size()];
+        int levelCount = 0;
+        // parents first, so every parent component's level is known before its children's
+        for (int c = 0; c < components.size(); c++) {
+            int level = 0;
+            for (int member : components.get(c)) {
+                for (int parent : parents[member]) {
+                    if (componentOf[parent] != c) level = Math.max(level, componentLevel[componentOf[parent]] + 1);
+                }
+            }
+            componentLevel[c] = level;
+            levelCount = Math.max(levelCount, level + 1);
+        }
+
+        levels = new ArrayList<List<Table>>();
+        for (int i = 0; i < levelCount; i++) {
+            levels.add(new ArrayList<Table>());
+        }
+        for (int i = 0; i < tables.size(); i++) {
+            levels.get(componentLevel[componentOf[i]]).add(tables.get(i));
+        }
+        for (Table view : views) {
+            levels.add(Collections.singletonList(view));
+        }
+        for (int i = 0; i < levels.size(); i++) {
+            levels.set(i, Collections.unmodifiableList(levels.get(i)));
+        }
+        levels = Collections.unmodifiableList(levels);
+    }
+
+    /**
+     * @return groups of tables, each depending only on tables in earlier groups or (in a cycle) on each
+     *      other, and otherwise in the order the schema lists them
+     */
+    public List<List<Table>> levels() {
+        return levels;
+    }
+
+    /**
+     * @return every table and view, each table after the ones it references unless they're in a cycle
+     */
+    public List<Table> topologicalOrder() {
+        List<Table> result = new ArrayList<Table>(tables.size() + views.size());
+        for (List<Table> level : levels) {
+            result.addAll(level);
+        }
+        return result;
+    }
+
+    /**
+     * @return the groups of tables whose foreign keys reference each other in a cycle, including
+     *      tables referencing themselves
+     */
+    public List<List<Table>> getCycles() {
+        List<int[]> cyclic = new ArrayList<int[]>();
+        for (int[] component : components) {
+            if (component.length > 1 || selfReferencing[component[0]]) {
+                cyclic.add(component);
+            }
+        }
+        // in the order the schema lists their first tables
+        Collections.sort(cyclic, new Comparator<int[]>() {
+            public int compare(int[] a, int[] b) {
+                return a[0] - b[0];
+            }
+        });
+        List<List<Table>> cycles = new ArrayList<List<Table>>();
+        for (int[] component : cyclic) {
+            cycles.add(tablesAt(component));
+        }
+        return cycles;
+    }
+
+    /**
+     * @return the tables this one references, other than itself
+     */
+    public List<Table> getParents(Table table) {
+        return tablesAt(edgesOf(table, parents));
+    }
+
+    /**
+     * @return the tables referencing this one, other than itself
+     */
+    public List<Table> getChildren(Table table) {
+        return tablesAt(edgesOf(table, children));
+    }
+
+    private int[] edgesOf(Table table, int[][] edges) {
+        Integer index = indexes.get(table);
+        return index == null ? new int[0] : edges[index.intValue()];
+    }
+
+    private List<Table> tablesAt(int[] positions) {
+        List<Table> result = new ArrayList<Table>(positions.length);
+        for (int position : positions) {
+            result.add(tables.get(position));
+        }
+        return result;
+    }
+}
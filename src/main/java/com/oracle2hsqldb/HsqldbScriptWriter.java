@@ -0,0 +1,172 @@
+/*
+ * Schemamule, a library for automating database schema tasks
+ * Copyright (C) 2006, Moses M. Hohman and Rhett Sutphin
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St., 5th Floor, Boston, MA  02110-1301
+
+ * To contact the authors, send email to:
+ * { mmhohman OR rsutphin } AT sourceforge DOT net
+ */
+package com.oracle2hsqldb;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+import org.hsqldb.persist.HsqlDatabaseProperties;
+
+/**
+ * Writes an HSQLDB file database (its .script and .properties files) directly, instead of executing
+ * each statement through the engine.  HSQLDB replays the script when the database is first opened, and
+ * rewrites it in its own format when the database is shut down.
+ *
+ * <p>Besides the statements passed to {@link #write(String)}, the script needs a few lines of its own:
+ * the file settings (without them HSQLDB writes zero cache sizes back on shutdown and then can't reopen the
+ * database), the admin user, the PUBLIC schema, which has to exist before anything can be created in it,
+ * and the schema new sessions start in.  Each statement has to be on one line; HSQLDB reads the file as
+ * ISO-8859-1 and decodes Java style unicode escapes, which is how line breaks, backslashes and everything
+ * outside printable ASCII are written, just as HSQLDB writes them itself.</p>
+ */
+public class HsqldbScriptWriter {
+    private static final String[] SETTINGS = {
+        // the defaults HSQLDB writes for a new database
+        "SET FILES WRITE DELAY 500 MILLIS",
+        "SET FILES BACKUP INCREMENT TRUE",
+        "SET FILES CACHE SIZE 10000",
+        "SET FILES CACHE ROWS 50000",
+        "SET FILES SCALE 32",
+        "SET FILES LOB SCALE 32",
+        "SET FILES DEFRAG 0",
+        "SET FILES NIO TRUE",
+        "SET FILES NIO SIZE 256",
+        "SET FILES LOG TRUE",
+        "SET FILES LOG SIZE 50",
+    };
+    private static final String[] EXTENSIONS = { ".properties", ".script", ".log", ".data", ".backup" };
+
+    protected Logger log = Logger.getLogger(getClass());
+
+    private File database;
+    private String username;
+    private Writer script;
+    private int statements = 0;
+
+    /**
+     * Starts the script.
+     *
+     * @param database the path of the database files, without their extensions; none of them may exist yet
+     * @param username the admin user, who gets the password
+     */
+    public HsqldbScriptWriter(File database, String username, String password) throws IOException {
+        this.database = database;
+        this.username = username;
+        for (String extension : EXTENSIONS) {
+            if (file(extension).exists()) throw new IOException("HSQLDB database " + database + " already exists");
+        }
+        File directory = database.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("could not create directory " + directory);
+
+        log.info("Writing HSQLDB script " + file(".script"));
+        script = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file(".script")), "ISO-8859-1"), 64 * 1024);
+        for (String setting : SETTINGS) {
+            line(setting);
+        }
+        line("CREATE USER " + username + " PASSWORD DIGEST '" + digest(password) + "'");
+        line("CREATE SCHEMA PUBLIC AUTHORIZATION DBA");
+        line("SET SCHEMA PUBLIC");
+    }
+
+    /**
+     * Adds a statement to the script, to be executed when the database is opened.
+     */
+    public void write(String statement) throws IOException {
+        line(statement.trim());
+        statements++;
+    }
+
+    /**
+     * Completes the script and writes the properties file, after which the database can be opened.
+     */
+    public void finish() throws IOException {
+        line("SET DATABASE DEFAULT INITIAL SCHEMA PUBLIC");
+        line("GRANT DBA TO " + username);
+        script.close();
+        script = null;
+
+        Properties properties = new Properties();
+        properties.setProperty("version", HsqlDatabaseProperties.THIS_VERSION);
+        properties.setProperty("modified", "no");
+        OutputStream out = new FileOutputStream(file(".properties"));
+        try {
+            properties.store(out, "HSQL Database Engine " + HsqlDatabaseProperties.THIS_VERSION);
+        } finally {
+            out.close();
+        }
+        log.info("Wrote " + statements + " statements to HSQLDB script " + file(".script"));
+    }
+
+    /**
+     * Closes the script if it wasn't finished, leaving a database which can't be opened.
+     */
+    public void close() throws IOException {
+        if (script != null) {
+            script.close();
+            script = null;
+        }
+    }
+
+    private File file(String extension) {
+        return new File(database.getPath() + extension);
+    }
+
+    private void line(String statement) throws IOException {
+        for (int i = 0; i < statement.length(); i++) {
+            char c = statement.charAt(i);
+            if (c < 0x20 || c > 0x7e || c == '\\') {
+                script.write(String.format("\\u%04x", (int) c));
+            } else {
+                script.write(c);
+            }
+        }
+        script.write('\n');
+    }
+
+    /**
+     * @return the password digest HSQLDB stores: the hex MD5 of its ISO-8859-1 bytes
+     */
+    static String digest(String password) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(password.getBytes("ISO-8859-1"));
+            StringBuilder result = new StringBuilder();
+            for (byte b : digest) {
+                result.append(String.format("%02x", b & 0xff));
+            }
+            return result.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
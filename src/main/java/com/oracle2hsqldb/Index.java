@@ -22,17 +22,22 @@
 
 package com.oracle2hsqldb;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
 /**
  * @author Moses Hohman
  */
-public class Index {
+public class Index implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private String name;
     private boolean isUnique;
-    private List<Column> columns;
+    private ArrayList<Column> columns;
+    private List<Column> frozenColumns;
 
     public Index(String name, boolean isUnique) {
         this.name = name;
@@ -49,14 +54,17 @@ public class Index {
     }
 
     public void name(String name) {
+        checkNotFrozen();
         this.name = name;
     }
 
     public List<Column> columns() {
+        if (frozenColumns != null) return frozenColumns;
         return columns;
     }
 
     public void addColumn(Column column) {
+        checkNotFrozen();
         boolean isNewColumn = true;
         for (Iterator<Column> cols = columns.iterator(); cols.hasNext();) {
             Column existingColumn = cols.next();
@@ -69,10 +77,23 @@ public class Index {
         }
         if (isNewColumn) {
             columns.add(column);
+            if (column.owner() != null) column.owner().changed();
         }
     }
 
     
+    void compact() {
+        columns.trimToSize();
+    }
+
+    void freeze() {
+        frozenColumns = Collections.unmodifiableList(columns);
+    }
+
+    private void checkNotFrozen() {
+        if (frozenColumns != null) throw new IllegalStateException("index " + name + " is frozen");
+    }
+
     public String toString() {
     	return (isUnique() ? "UNIQUE" : "NOT-UNIQUE") + " INDEX " + name() + "[" + columns + "]"; 
     }
@@ -0,0 +1,45 @@
+/*
+ * Schemamule, a library for automating database schema tasks
+ * Copyright (C) 2006, Moses M. Hohman and Rhett Sutphin
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St., 5th Floor, Boston, MA  02110-1301
+
+ * To contact the authors, send email to:
+ * { mmhohman OR rsutphin } AT sourceforge DOT net
+ */
+
+package com.oracle2hsqldb;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Hands out one shared instance per distinct name, so the many copies of a table or column name a
+ * dictionary read produces (one per column, key and index row) share their storage.  Unlike
+ * {@link String#intern()} the names are dropped along with the pool.  Safe to use from several threads.
+ */
+public class NamePool {
+    private ConcurrentMap<String, String> names = new ConcurrentHashMap<String, String>();
+
+    public String intern(String name) {
+        if (name == null) return null;
+        String existing = names.putIfAbsent(name, name);
+        return existing == null ? name : existing;
+    }
+
+    public int size() {
+        return names.size();
+    }
+}
@@ -22,41 +22,63 @@
 
 package com.oracle2hsqldb;
 
-import java.util.HashSet;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 /**
+ * Columns are kept in key order (Oracle's position, JDBC's KEY_SEQ), which is the
+ * column order of the index HSQLDB builds for the key.
+ *
  * @author Moses Hohman
  */
-public class PrimaryKey {
+public class PrimaryKey implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private String name;
-    private Set<Column> columns = new HashSet<Column>();
+    private Set<Column> columns = new LinkedHashSet<Column>();
+    private List<Column> frozenColumns;
 
     public String name() {
         return name;
     }
 
     public void name(String name) {
+        checkNotFrozen();
         this.name = name;
     }
 
     public void addColumn(Column column) {
+        checkNotFrozen();
         if (columns.size() > 0) {
             Column existingColumn = (Column) columns.iterator().next();
             if (!existingColumn.owner().equals(column.owner())) {
                 throw new IllegalArgumentException("column to add does not have the same owner table as existing primary key columns");
             }
         }
-        columns.add(column);
+        if (columns.add(column) && column.owner() != null) column.owner().changed();
     }
 
     public List<Column> columns() {
+        if (frozenColumns != null) return frozenColumns;
         return new LinkedList<Column>(columns);
     }
 
+    void freeze() {
+        frozenColumns = Collections.unmodifiableList(new ArrayList<Column>(columns));
+    }
+
+    private void checkNotFrozen() {
+        if (frozenColumns != null) throw new IllegalStateException("primary key " + name + " is frozen");
+    }
+
     public String toString() {
         return name;
     }
@@ -64,23 +86,34 @@ public class PrimaryKey {
     public static class Spec {
         private String tableName;
         private String name;
-        private List<String> columnNames;
+        private SortedMap<Integer, String> columnNames;
 
         public Spec(String tableName, String name) {
             this.tableName = tableName;
             this.name = name;
-            this.columnNames = new LinkedList<String>();
+            this.columnNames = new TreeMap<Integer, String>();
         }
 
+        /**
+         * Adds a column after the ones added so far.
+         */
         public void addColumnName(String name) {
-            columnNames.add(name);
+            addColumnName(name, columnNames.isEmpty() ? 1 : columnNames.lastKey() + 1);
+        }
+
+        /**
+         * Adds a column at its 1-based position in the key, whatever order the
+         * columns are read in.
+         */
+        public void addColumnName(String name, int position) {
+            columnNames.put(position, name);
         }
 
         public void addPrimaryKey(Table table) {
             PrimaryKey key = new PrimaryKey();
             key.name(this.name);
 
-            for (Iterator<String> columnNames = this.columnNames.iterator(); columnNames.hasNext(); ) {
+            for (Iterator<String> columnNames = this.columnNames.values().iterator(); columnNames.hasNext(); ) {
                 String columnName = columnNames.next();
                 key.addColumn(table.findColumn(columnName));
             }
@@ -22,10 +22,14 @@
 
 package com.oracle2hsqldb;
 
+import java.io.Serializable;
+
 /**
  * @author Moses Hohman
  */
-public class Reference {
+public class Reference implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private String name;
     private Column refersTo;
 
@@ -41,4 +45,46 @@ public class Reference {
     public Column refersTo() {
         return refersTo;
     }
+
+    /**
+     * One column of a foreign key, as read from the database.
+     */
+    public static class Spec {
+        private String tableName;
+        private String columnName;
+        private String name;
+        private String referencedTableName;
+        private String referencedColumnName;
+
+        public Spec(String tableName, String columnName, String name, String referencedTableName, String referencedColumnName) {
+            this.tableName = tableName;
+            this.columnName = columnName;
+            this.name = name;
+            this.referencedTableName = referencedTableName;
+            this.referencedColumnName = referencedColumnName;
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        public String getColumnName() {
+            return columnName;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the referenced table, or null if it is not visible in this schema
+         */
+        public String getReferencedTableName() {
+            return referencedTableName;
+        }
+
+        public String getReferencedColumnName() {
+            return referencedColumnName;
+        }
+    }
 }
@@ -22,18 +22,25 @@
 
 package com.oracle2hsqldb;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Moses Hohman
  */
-public class Schema {
+public class Schema implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private String name;
-    private List<Table> tables = new ArrayList<Table>();
+    private ArrayList<Table> tables = new ArrayList<Table>();
+    private Map<String, Table> tablesByName = new HashMap<String, Table>();
     private List<Sequence> sequences = new ArrayList<Sequence>();
+    private boolean frozen;
 
     public Schema(String name) {
         this.name = name;
@@ -48,18 +55,26 @@ public class Schema {
     }
 
     public void addTable(Table table) {
+        checkNotFrozen();
         tables.add(table);
+        if (!tablesByName.containsKey(table.name())) {
+            tablesByName.put(table.name(), table);
+        }
     }
 
     public Table findTable(String name) {
-        Iterator tabs = tables.iterator();
-        while (tabs.hasNext()) {
-            Table tab = (Table) tabs.next();
-            if (tab.name().equals(name)) {
-                return tab;
-            }
+        return tablesByName.get(name);
+    }
+
+    /**
+     * {@link Table#compact() Compacts} every table.
+     */
+    public void compact() {
+        if (frozen) return;
+        tables.trimToSize();
+        for (Table table : tables) {
+            table.compact();
         }
-        return null;
     }
 
     public List<Sequence> sequences() {
@@ -67,6 +82,49 @@ public class Schema {
     }
 
     public void addSequence(Sequence seq) {
+        checkNotFrozen();
         sequences.add(seq);
     }
+
+    /**
+     * Returns an immutable deep copy of this schema: every table, column, key and index in it refuses
+     * changes with an IllegalStateException, and everything the accessors work out lazily (column roles,
+     * the index lists) is worked out up front.  Since nothing in it is written after this returns, it can
+     * be read by any number of threads at once once it's been handed to them.
+     */
+    public Schema freeze() {
+        if (frozen) return this;
+        Schema copy = new Schema(name);
+        Map<Column, Column> columnCopies = new IdentityHashMap<Column, Column>();
+        for (Table table : tables) {
+            copy.addTable(table.copy(columnCopies));
+        }
+        for (Map.Entry<Column, Column> column : columnCopies.entrySet()) {
+            Reference reference = column.getKey().reference();
+            if (reference != null) {
+                Column refersTo = columnCopies.get(reference.refersTo());
+                if (refersTo == null && reference.refersTo() != null && reference.refersTo().owner() != null) {
+                    Table referenced = copy.findTable(reference.refersTo().owner().name());
+                    if (referenced != null) refersTo = referenced.findColumn(reference.refersTo().name());
+                }
+                // a column outside this schema is left as it is
+                column.getValue().reference(refersTo == null ? reference : new Reference(reference.name(), refersTo));
+            }
+        }
+        copy.sequences.addAll(sequences);
+        copy.compact();
+        for (Table table : copy.tables) {
+            table.freeze();
+        }
+        copy.frozen = true;
+        return copy;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) throw new IllegalStateException("schema " + name + " is frozen");
+    }
 }
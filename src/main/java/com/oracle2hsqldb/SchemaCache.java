@@ -0,0 +1,129 @@
+/*
+ * Schemamule, a library for automating database schema tasks
+ * Copyright (C) 2006, Moses M. Hohman and Rhett Sutphin
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St., 5th Floor, Boston, MA  02110-1301
+
+ * To contact the authors, send email to:
+ * { mmhohman OR rsutphin } AT sourceforge DOT net
+ */
+
+package com.oracle2hsqldb;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Date;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A schema saved to a local file, along with when the DDL of each of its tables and views last changed,
+ * so that a {@link SchemaReader} only has to re-read the ones which changed since.
+ * <p>
+ * The model classes are stored serialized.  Bump their serialVersionUIDs when their serialized fields
+ * change, so cache files written by an older version fail to load and are read again from the database.
+ */
+public class SchemaCache {
+    protected Logger log = Logger.getLogger(getClass());
+
+    private File file;
+
+    public SchemaCache(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @param key identifies the schema and how it was read
+     * @return the cached entry, or null if there is none for the key or it can't be read
+     */
+    Entry load(String key) {
+        if (!file.exists()) {
+            log.info("No cached schema in " + file);
+            return null;
+        }
+        try {
+            ObjectInputStream in = new ObjectInputStream(new FileInputStream(file));
+            try {
+                Entry entry = (Entry) in.readObject();
+                if (!key.equals(entry.key)) {
+                    log.info("Cached schema in " + file + " was read differently; ignoring it");
+                    return null;
+                }
+                return entry;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            log.warn("Could not read cached schema from " + file + "; ignoring it", e);
+        } catch (ClassNotFoundException e) {
+            log.warn("Could not read cached schema from " + file + "; ignoring it", e);
+        } catch (ClassCastException e) {
+            log.warn("Could not read cached schema from " + file + "; ignoring it", e);
+        }
+        return null;
+    }
+
+    void store(String key, Schema schema, Map<String, Date> lastDdlTimes) {
+        // written aside and moved into place, so a failed write never leaves a truncated cache
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(temp));
+            try {
+                out.writeObject(new Entry(key, schema, lastDdlTimes));
+            } finally {
+                out.close();
+            }
+            if (file.exists() && !file.delete() || !temp.renameTo(file)) {
+                throw new IOException("could not replace " + file);
+            }
+            log.info("Cached schema in " + file);
+        } catch (IOException e) {
+            log.warn("Could not cache schema in " + file, e);
+            temp.delete();
+        }
+    }
+
+    static class Entry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private String key;
+        private Schema schema;
+        private Map<String, Date> lastDdlTimes;
+
+        Entry(String key, Schema schema, Map<String, Date> lastDdlTimes) {
+            this.key = key;
+            this.schema = schema;
+            this.lastDdlTimes = lastDdlTimes;
+        }
+
+        Schema getSchema() {
+            return schema;
+        }
+
+        Map<String, Date> getLastDdlTimes() {
+            return lastDdlTimes;
+        }
+    }
+}
@@ -23,11 +23,23 @@
 package com.oracle2hsqldb;
 
 import java.sql.Connection;
-import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.sql.DataSource;
 
@@ -41,8 +53,15 @@ import org.springframework.util.MultiValueMap;
 public class SchemaReader {
     protected Logger log = Logger.getLogger(getClass());
 
+    private static final int METADATA_PHASES = 5;
+    private static final int DEFAULT_CHUNK_SIZE = 100;
+
     private Configuration config;
     private DataSource dataSource;
+    private boolean singleConnection;
+    private int threads = 1;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private SchemaCache cache;
 
     public SchemaReader(Connection connection) {
         this(Configuration.DEFAULT_CONFIG, connection);
@@ -51,14 +70,49 @@ public class SchemaReader {
     public SchemaReader(Configuration config, Connection connection) {
         this.config = config;
         this.dataSource = new SingleConnectionDataSource(connection, true);
+        this.singleConnection = true;
+    }
+
+    /**
+     * Use this constructor to read the metadata phases concurrently (see {@link #setThreads(int)}). The
+     * data source should hand out a separate connection per call, i.e. be a pool or a DriverManagerDataSource.
+     */
+    public SchemaReader(Configuration config, DataSource dataSource) {
+        this.config = config;
+        this.dataSource = dataSource;
     }
 
     public Configuration configuration() {
         return config;
     }
 
-    private Connection getConnection() throws SQLException {
-        return dataSource.getConnection();
+    /**
+     * Once the tables are known, the columns, primary keys, foreign keys, indexes and sequences
+     * are read by up to this many threads at once, each phase over its own connection.  Only used
+     * when the reader was created with a DataSource; a reader given a single Connection logs a warning
+     * and reads one phase after another, as it does by default.
+     */
+    public void setThreads(int threads) {
+        if (threads > 1 && singleConnection) {
+            log.warn("Reading metadata sequentially, " + threads + " threads need a SchemaReader created with a DataSource");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * The number of tables {@link #read(String, TableFilter, SchemaListener)} reads metadata for at once.
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Keep the schema {@link #read(String, TableFilter) read} in this cache, and on the next read only
+     * re-read the tables and views whose DDL changed since.  Only used when the dialect can
+     * {@link com.oracle2hsqldb.dialect.Dialect#getLastDdlTimes tell what changed}.
+     */
+    public void setCache(SchemaCache cache) {
+        this.cache = cache;
     }
 
     public Schema read(String schemaName) throws SQLException {
@@ -66,6 +120,26 @@ public class SchemaReader {
     }
 
     public Schema read(String schemaName, TableFilter filter) throws SQLException {
+        if (cache == null) return readAll(schemaName, filter);
+
+        Map<String, Date> lastDdlTimes = configuration().dialect().getLastDdlTimes(dataSource, schemaName, filter);
+        if (lastDdlTimes == null) {
+            log.info("Can't tell which tables changed; not using the schema cache");
+            return readAll(schemaName, filter);
+        }
+        String key = cacheKey(schemaName);
+        SchemaCache.Entry cached = cache.load(key);
+        Schema schema;
+        if (cached == null) {
+            schema = readAll(schemaName, filter);
+        } else {
+            schema = readChanges(schemaName, cached, lastDdlTimes);
+        }
+        cache.store(key, schema, lastDdlTimes);
+        return schema;
+    }
+
+    private Schema readAll(String schemaName, TableFilter filter) throws SQLException {
         Schema schema = new Schema(schemaName);
 
         log.info("Reading tables ...");
@@ -75,43 +149,333 @@ public class SchemaReader {
             schema.addTable(spec.getTable());
         }
 
-        log.info("Reading columns ...");
-        MultiValueMap<String, Column.Spec> columns = configuration().dialect().getColumns(dataSource, schemaName, tables);
-        for (Table.Spec table : tables) {
-        	for (Column.Spec column : columns.get(table.getTableName())) {
-        		Table t = schema.findTable(table.getTableName());
-        		if (t != null) {
-        			t.addColumn(column.getColumn());
-        		}
-        	}
-		}
+        MetaData metaData = readMetaData(schemaName, tables, null, true);
+
+        // the schema is always assembled in the same order, however the metadata was read;
+        // each kind of spec is let go as soon as it's attached
+        addColumns(schema, tables, metaData.columns);
+        metaData.columns = null;
+        if (metaData.primaryKeys != null) addPrimaryKeys(schema, tables, metaData.primaryKeys);
+        metaData.primaryKeys = null;
+        if (configuration().supportsForeignKeys()) addForeignKeys(schema, metaData.foreignKeys);
+        metaData.foreignKeys = null;
+        if (metaData.indicies != null) addUniqueKeys(schema, metaData.indicies);
+        metaData.indicies = null;
+        if (metaData.sequences != null) addSequences(schema, metaData.sequences);
+        schema.compact();
 
-        if (configuration().supportsPrimaryKeys()) readPrimaryKeys(schema, tables);
-        if (configuration().supportsForeignKeys()) readForeignKeys(schema);
-        if (configuration().supportsUniqueKeys()) readUniqueKeys(schema, tables);
+        log.info("Schema read!");
+        return schema;
+    }
 
-        log.info("Supports sequences? " + configuration().supportsSequences());
-        if (configuration().supportsSequences()) readSequences(schemaName, schema);
+    private String cacheKey(String schemaName) {
+        return schemaName + ";" + configuration().dialect().getClass().getName()
+            + ";pk=" + configuration().supportsPrimaryKeys()
+            + ";fk=" + configuration().supportsForeignKeys()
+            + ";seq=" + configuration().supportsSequences();
+    }
 
-        log.info("Schema read!");
+    /**
+     * Patches the cached schema: tables and views which are new or whose DDL changed are read again,
+     * dropped ones are removed, and references to or from the re-read tables are rewired.  Sequences
+     * are always read again, since their values change without any DDL.
+     */
+    private Schema readChanges(String schemaName, SchemaCache.Entry cached, Map<String, Date> lastDdlTimes) throws SQLException {
+        Schema previous = cached.getSchema();
+        final Set<String> changed = new LinkedHashSet<String>();
+        for (Map.Entry<String, Date> time : lastDdlTimes.entrySet()) {
+            Date previousTime = cached.getLastDdlTimes().get(time.getKey());
+            if (previousTime == null || time.getValue() == null || previousTime.getTime() != time.getValue().getTime()
+                    || previous.findTable(time.getKey()) == null) {
+                changed.add(time.getKey());
+            }
+        }
+        Set<String> replaced = new HashSet<String>(changed);
+        for (Table table : previous.tables()) {
+            if (!lastDdlTimes.containsKey(table.name())) replaced.add(table.name());
+        }
+        log.info("Using cached schema; " + changed.size() + " tables changed and "
+            + (replaced.size() - changed.size()) + " were dropped since it was read");
+
+        Schema changes = new Schema(schemaName);
+        if (!changed.isEmpty()) {
+            changes = readAll(schemaName, new NamedTablesFilter(changed));
+        } else if (configuration().supportsSequences()) {
+            addSequences(changes, readSequences(dataSource, schemaName));
+        }
+
+        Schema schema = new Schema(schemaName);
+        for (Table table : previous.tables()) {
+            if (!replaced.contains(table.name())) {
+                schema.addTable(table);
+            } else if (changes.findTable(table.name()) != null) {
+                schema.addTable(changes.findTable(table.name()));
+            }
+        }
+        List<Table.Spec> reread = new ArrayList<Table.Spec>();
+        for (Table table : changes.tables()) {
+            if (previous.findTable(table.name()) == null) schema.addTable(table);
+            reread.add(new Table.Spec(table.name(), table.type().getJdbcName()));
+        }
+        for (Sequence sequence : changes.sequences()) {
+            schema.addSequence(sequence);
+        }
+
+        if (configuration().supportsForeignKeys() && !replaced.isEmpty()) {
+            for (Table table : schema.tables()) {
+                if (replaced.contains(table.name())) continue;
+                for (Column column : table.columns()) {
+                    Reference reference = column.reference();
+                    if (reference == null || reference.refersTo() == null || !replaced.contains(reference.refersTo().owner().name())) continue;
+                    Table primaryTable = schema.findTable(reference.refersTo().owner().name());
+                    Column primaryColumn = primaryTable == null ? null : primaryTable.findColumn(reference.refersTo().name());
+                    column.reference(primaryColumn == null ? null : new Reference(reference.name(), primaryColumn));
+                }
+            }
+            if (!reread.isEmpty()) addForeignKeys(schema, readForeignKeys(dataSource, schemaName, reread));
+        }
+        schema.compact();
         return schema;
     }
 
-    private void readSequences(String schemaName, Schema schema) throws SQLException {
+    /**
+     * Reads the schema {@link #setChunkSize(int) a chunk} of tables at a time, passing each table to the
+     * listener as soon as its columns, primary key and indexes are attached, in the order
+     * {@link #read(String, TableFilter)} would list them, and then the sequences.
+     * <p>
+     * The foreign keys are read once up front.  A reference to a table in the same or an earlier chunk is
+     * attached before the referencing table is passed on; one to a later table is attached when that table
+     * is read.  Only the tables still waiting on such a reference are kept once their chunk is done.
+     */
+    public void read(String schemaName, TableFilter filter, SchemaListener listener) throws SQLException {
+        log.info("Reading tables ...");
+        List<Table.Spec> tables = configuration().dialect().getTables(dataSource, schemaName, filter);
+        Set<String> tableNames = new HashSet<String>();
+        for (Table.Spec spec : tables) {
+            log.debug("Accepted table " + spec.getTableName());
+            tableNames.add(spec.getTableName());
+        }
+
+        List<Reference.Spec> foreignKeys = Collections.emptyList();
+        if (readsForeignKeys()) foreignKeys = readForeignKeys(dataSource, schemaName, tables);
+        List<Reference.Spec> unresolved = new LinkedList<Reference.Spec>();
+        if (configuration().supportsForeignKeys()) {
+            for (Reference.Spec spec : foreignKeys) {
+                if (tableNames.contains(spec.getTableName()) && tableNames.contains(spec.getReferencedTableName())) {
+                    unresolved.add(spec);
+                }
+            }
+        }
+
+        Map<String, Table> waiting = new HashMap<String, Table>();
+        for (int start = 0; start < tables.size(); start += chunkSize) {
+            List<Table.Spec> chunk = tables.subList(start, Math.min(start + chunkSize, tables.size()));
+            log.info("Reading tables " + (start + 1) + " to " + (start + chunk.size()) + " of " + tables.size() + " ...");
+            Schema chunkSchema = new Schema(schemaName);
+            Set<String> chunkTableNames = new HashSet<String>();
+            for (Table.Spec spec : chunk) {
+                chunkSchema.addTable(spec.getTable());
+                chunkTableNames.add(spec.getTableName());
+            }
+            List<Reference.Spec> chunkForeignKeys = new ArrayList<Reference.Spec>();
+            for (Reference.Spec spec : foreignKeys) {
+                if (chunkTableNames.contains(spec.getTableName())) chunkForeignKeys.add(spec);
+            }
+
+            MetaData metaData = readMetaData(schemaName, chunk, chunkForeignKeys, false);
+            addColumns(chunkSchema, chunk, metaData.columns);
+            if (metaData.primaryKeys != null) addPrimaryKeys(chunkSchema, chunk, metaData.primaryKeys);
+            if (metaData.indicies != null) addUniqueKeys(chunkSchema, metaData.indicies);
+            chunkSchema.compact();
+
+            for (Table table : chunkSchema.tables()) {
+                waiting.put(table.name(), table);
+            }
+            Set<String> stillReferenced = new HashSet<String>();
+            for (Iterator<Reference.Spec> specs = unresolved.iterator(); specs.hasNext();) {
+                Reference.Spec spec = specs.next();
+                Table foreignTable = waiting.get(spec.getTableName());
+                Table primaryTable = waiting.get(spec.getReferencedTableName());
+                if (foreignTable != null && primaryTable != null) {
+                    addForeignKey(foreignTable, primaryTable, spec);
+                    specs.remove();
+                } else {
+                    stillReferenced.add(spec.getTableName());
+                    stillReferenced.add(spec.getReferencedTableName());
+                }
+            }
+            waiting.keySet().retainAll(stillReferenced);
+
+            for (Table table : chunkSchema.tables()) {
+                listener.tableRead(table);
+            }
+        }
+
+        log.info("Supports sequences? " + configuration().supportsSequences());
+        if (configuration().supportsSequences()) {
+            for (Sequence sequence : readSequences(dataSource, schemaName)) {
+                listener.sequenceRead(sequence);
+            }
+        }
+        log.info("Schema read!");
+    }
+
+    /**
+     * Widens filter to a {@link ForeignKeyClosureFilter}, using a single query for all of the schema's
+     * foreign keys.
+     *
+     * @param childDepth how many steps to follow foreign keys to referencing tables; 0 for none
+     */
+    public TableFilter closeOverForeignKeys(String schemaName, TableFilter filter, int childDepth) throws SQLException {
+        log.info("Reading foreign key graph ...");
+        List<Table.Spec> tables = configuration().dialect().getTables(dataSource, schemaName, AllTablesFilter.INSTANCE);
+        List<String> tableNames = new ArrayList<String>(tables.size());
+        for (Table.Spec table : tables) {
+            tableNames.add(table.getTableName());
+        }
+        ForeignKeyClosureFilter closure = new ForeignKeyClosureFilter(filter, tableNames,
+                configuration().dialect().getForeignKeys(dataSource, schemaName, tables), childDepth);
+        log.info("Reading " + closure.getIncludedTables().size() + " tables to keep foreign keys consistent");
+        return closure;
+    }
+
+    /**
+     * @param foreignKeys the foreign keys of these tables if they have already been read, otherwise null
+     */
+    private MetaData readMetaData(String schemaName, List<Table.Spec> tables, List<Reference.Spec> foreignKeys, boolean withSequences) throws SQLException {
+        if (threads > 1 && !singleConnection) {
+            return readMetaDataConcurrently(schemaName, tables, foreignKeys, withSequences);
+        }
+        MetaData metaData = new MetaData();
+        metaData.columns = readColumns(dataSource, schemaName, tables);
+        if (configuration().supportsPrimaryKeys()) metaData.primaryKeys = readPrimaryKeys(dataSource, schemaName, tables);
+        if (foreignKeys != null) {
+            metaData.foreignKeys = foreignKeys;
+        } else if (readsForeignKeys()) {
+            metaData.foreignKeys = readForeignKeys(dataSource, schemaName, tables);
+        }
+        if (configuration().supportsUniqueKeys()) metaData.indicies = readUniqueKeys(dataSource, schemaName, tables, metaData.foreignKeys);
+        if (withSequences) {
+            log.info("Supports sequences? " + configuration().supportsSequences());
+            if (configuration().supportsSequences()) metaData.sequences = readSequences(dataSource, schemaName);
+        }
+        return metaData;
+    }
+
+    private MetaData readMetaDataConcurrently(final String schemaName, final List<Table.Spec> tables,
+            final List<Reference.Spec> knownForeignKeys, boolean withSequences) throws SQLException {
+        log.info("Reading metadata with " + threads + " threads ...");
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, METADATA_PHASES));
+        try {
+            Future<MultiValueMap<String, Column.Spec>> columns = executor.submit(new Phase<MultiValueMap<String, Column.Spec>>() {
+                protected MultiValueMap<String, Column.Spec> read(DataSource phaseDataSource) throws SQLException {
+                    return readColumns(phaseDataSource, schemaName, tables);
+                }
+            });
+            Future<Map<String, PrimaryKey.Spec>> primaryKeys = null;
+            if (configuration().supportsPrimaryKeys()) {
+                primaryKeys = executor.submit(new Phase<Map<String, PrimaryKey.Spec>>() {
+                    protected Map<String, PrimaryKey.Spec> read(DataSource phaseDataSource) {
+                        return readPrimaryKeys(phaseDataSource, schemaName, tables);
+                    }
+                });
+            }
+            // submitted ahead of the indexes, which wait for them, so a smaller pool can't deadlock
+            Future<List<Reference.Spec>> foreignKeys = null;
+            if (knownForeignKeys == null && readsForeignKeys()) {
+                foreignKeys = executor.submit(new Phase<List<Reference.Spec>>() {
+                    protected List<Reference.Spec> read(DataSource phaseDataSource) {
+                        return readForeignKeys(phaseDataSource, schemaName, tables);
+                    }
+                });
+            }
+            Future<List<Index.Spec>> indicies = null;
+            if (configuration().supportsUniqueKeys()) {
+                final Future<List<Reference.Spec>> indexedForeignKeys = foreignKeys;
+                indicies = executor.submit(new Phase<List<Index.Spec>>() {
+                    protected List<Index.Spec> read(DataSource phaseDataSource) throws SQLException {
+                        List<Reference.Spec> foreignKeys = knownForeignKeys != null ? knownForeignKeys : get(indexedForeignKeys);
+                        return readUniqueKeys(phaseDataSource, schemaName, tables, foreignKeys);
+                    }
+                });
+            }
+            Future<List<Sequence>> sequences = null;
+            if (withSequences) log.info("Supports sequences? " + configuration().supportsSequences());
+            if (withSequences && configuration().supportsSequences()) {
+                sequences = executor.submit(new Phase<List<Sequence>>() {
+                    protected List<Sequence> read(DataSource phaseDataSource) throws SQLException {
+                        return readSequences(phaseDataSource, schemaName);
+                    }
+                });
+            }
+
+            MetaData metaData = new MetaData();
+            metaData.columns = get(columns);
+            metaData.primaryKeys = get(primaryKeys);
+            if (knownForeignKeys != null) {
+                metaData.foreignKeys = knownForeignKeys;
+            } else if (foreignKeys != null) {
+                metaData.foreignKeys = get(foreignKeys);
+            }
+            metaData.indicies = get(indicies);
+            metaData.sequences = get(sequences);
+            return metaData;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private boolean readsForeignKeys() {
+        // foreign keys are read once and used both for the references and for the indexes on them
+        return configuration().supportsForeignKeys() || configuration().supportsUniqueKeys();
+    }
+
+    private MultiValueMap<String, Column.Spec> readColumns(DataSource dataSource, String schemaName, List<Table.Spec> tables) throws SQLException {
+        log.info("Reading columns ...");
+        return configuration().dialect().getColumns(dataSource, schemaName, tables);
+    }
+
+    private Map<String, PrimaryKey.Spec> readPrimaryKeys(DataSource dataSource, String schemaName, List<Table.Spec> tables) {
+        log.info("Reading primary keys...");
+        return configuration().dialect().getPrimaryKeys(dataSource, schemaName, tables);
+    }
+
+    private List<Reference.Spec> readForeignKeys(DataSource dataSource, String schemaName, List<Table.Spec> tables) {
+        log.info("Reading foreign keys...");
+        return configuration().dialect().getForeignKeys(dataSource, schemaName, tables);
+    }
+
+    private List<Index.Spec> readUniqueKeys(DataSource dataSource, String schemaName, List<Table.Spec> tables, List<Reference.Spec> foreignKeys) {
+        log.info("Reading unique keys...");
+        return configuration().dialect().getIndicies(dataSource, schemaName, tables, foreignKeys);
+    }
+
+    private List<Sequence> readSequences(DataSource dataSource, String schemaName) throws SQLException {
         log.info("Reading sequences ...");
+        return configuration().dialect().getSequences(dataSource, schemaName);
+    }
 
-        List<Sequence> seq = configuration().dialect().getSequences(dataSource, schemaName);
+    private void addColumns(Schema schema, List<Table.Spec> tables, MultiValueMap<String, Column.Spec> columns) {
+        for (Table.Spec table : tables) {
+            List<Column.Spec> tableColumns = columns.remove(table.getTableName());
+            Table t = schema.findTable(table.getTableName());
+            if (t != null && tableColumns != null) {
+                for (Column.Spec column : tableColumns) {
+                    t.addColumn(column.getColumn());
+                }
+            }
+        }
+    }
+
+    private void addSequences(Schema schema, List<Sequence> seq) {
         for (Sequence sequence : seq) {
         	schema.addSequence(sequence);
 		}
     }
 
-    private void readPrimaryKeys(Schema schema, List<Table.Spec> tables) {
-        log.info("Reading primary keys...");
-
-        Map<String, PrimaryKey.Spec> keys = configuration().dialect().getPrimaryKeys(dataSource, schema.name(), tables);
+    private void addPrimaryKeys(Schema schema, List<Table.Spec> tables, Map<String, PrimaryKey.Spec> keys) {
         for (Table.Spec table : tables) {
-        	PrimaryKey.Spec pk = keys.get(table.getTableName());
+        	PrimaryKey.Spec pk = keys.remove(table.getTableName());
         	if (pk != null) {
         		Table t = schema.findTable(table.getTableName());
         		if (t!=null) {
@@ -121,15 +485,12 @@ public class SchemaReader {
 		}
     }
 
-    private void readUniqueKeys(Schema schema, List<Table.Spec> tables) {
-        log.info("Reading unique keys...");
-
-        List<Index.Spec> keys = configuration().dialect().getIndicies(dataSource, schema.name(), tables);
+    private void addUniqueKeys(Schema schema, List<Index.Spec> keys) {
         for (Index.Spec spec : keys) {
             Table table = schema.findTable(spec.getTableName());
             if (table != null && spec.getColumnName() != null) {
                 Column indexed = table.findColumn(spec.getColumnName());
-                Index index = table.findIndex(spec.getIndexName());
+                Index index = table.index(spec.getIndexName());
                 if (index == null) {
                     index = new Index(spec.getIndexName(), spec.isUnique());
                 }
@@ -138,6 +499,7 @@ public class SchemaReader {
         }
 
         removeIndicesOnlyContainingPrimaryKey(schema);
+        removeCoveredIndicies(schema);
     }
 
     private void removeIndicesOnlyContainingPrimaryKey(Schema schema) {
@@ -145,37 +507,157 @@ public class SchemaReader {
 
         while (tables.hasNext()) {
             Table table = tables.next();
+            // the index backing a composite key, written as part of the key itself
+            List<Column> keyColumns = table.primaryKey() == null ? null : table.primaryKey().columns();
             Iterator constraints = table.indicies().iterator();
             while (constraints.hasNext()) {
                 Index constraint = (Index) constraints.next();
                 if (constraint.columns().size() == 1 && ((Column) constraint.columns().get(0)).isPrimaryKeyMember()) {
                     table.removeIndex(constraint);
+                } else if (keyColumns != null && keyColumns.equals(constraint.columns())) {
+                    table.removeIndex(constraint);
+                } else if (keyColumns != null && new HashSet<Column>(keyColumns).equals(new HashSet<Column>(constraint.columns()))) {
+                    // the key's columns in another order are another access path, but HSQLDB rejects a second
+                    // unique constraint on them, and the key keeps them unique anyway
+                    table.removeIndex(constraint);
+                    table.addIndex(nonUnique(constraint));
                 }
             }
         }
     }
 
-    private void readForeignKeys(Schema schema) throws SQLException {
-        log.info("Reading foreign keys...");
+    private static Index nonUnique(Index index) {
+        Index result = new Index(index.name(), false);
+        for (Column column : index.columns()) {
+            result.addColumn(column);
+        }
+        return result;
+    }
 
-        Iterator foreignTables = schema.tables().iterator();
+    /**
+     * Drops the non-unique indexes which some other index or the primary key already serves, that is whose
+     * columns are a leading prefix of the other one's.  Most of these are the ones synthesized for foreign
+     * keys (see {@link com.oracle2hsqldb.dialect.GenericDialect#addForeignKeyIndicies}) on columns the source
+     * had indexed anyway.  Of several identical non-unique indexes the first one is kept.
+     */
+    private void removeCoveredIndicies(Schema schema) {
+        for (Table table : schema.tables()) {
+            List<Index> indicies = table.indicies();
+            for (int i = 0; i < indicies.size(); i++) {
+                Index index = indicies.get(i);
+                if (index.isUnique()) continue;
+                String coveredBy = null;
+                if (table.primaryKey() != null && isPrefix(index.columns(), table.primaryKey().columns())) {
+                    coveredBy = "primary key " + table.primaryKey().name();
+                }
+                for (int j = 0; coveredBy == null && j < indicies.size(); j++) {
+                    Index other = indicies.get(j);
+                    if (j != i && isPrefix(index.columns(), other.columns())
+                            && (other.isUnique() || other.columns().size() > index.columns().size() || j < i)) {
+                        coveredBy = "index " + other.name();
+                    }
+                }
+                if (coveredBy != null) {
+                    log.info("Dropping index " + index.name() + " on " + table.name() + ", its columns lead " + coveredBy);
+                    table.removeIndex(index);
+                }
+            }
+        }
+    }
 
-        while (foreignTables.hasNext()) {
-            Table foreignTable = (Table) foreignTables.next();
-            ResultSet importedKeys = getConnection().getMetaData().getImportedKeys(null, null, foreignTable.name());
+    private static boolean isPrefix(List<Column> prefix, List<Column> columns) {
+        return prefix.size() <= columns.size() && columns.subList(0, prefix.size()).equals(prefix);
+    }
 
-            while (importedKeys.next()) {
-                Table primaryTable = schema.findTable(importedKeys.getString("PKTABLE_NAME"));
-                boolean primaryTableExistsInThisSchema = (primaryTable != null);
-                if (primaryTableExistsInThisSchema) {
-                    Column primaryColumn = primaryTable.findColumn(importedKeys.getString("PKCOLUMN_NAME"));
-                    Column foreignColumn = foreignTable.findColumn(importedKeys.getString("FKCOLUMN_NAME"));
-                    Reference ref = new Reference(importedKeys.getString("FK_NAME"), primaryColumn);
-                    foreignColumn.reference(ref);
-                }
+    private void addForeignKeys(Schema schema, List<Reference.Spec> foreignKeys) {
+        for (Reference.Spec spec : foreignKeys) {
+            Table foreignTable = schema.findTable(spec.getTableName());
+            Table primaryTable = schema.findTable(spec.getReferencedTableName());
+            boolean primaryTableExistsInThisSchema = (primaryTable != null);
+            if (foreignTable != null && primaryTableExistsInThisSchema) {
+                addForeignKey(foreignTable, primaryTable, spec);
             }
+        }
+    }
 
-            importedKeys.close();
+    private void addForeignKey(Table foreignTable, Table primaryTable, Reference.Spec spec) {
+        Column primaryColumn = primaryTable.findColumn(spec.getReferencedColumnName());
+        Column foreignColumn = foreignTable.findColumn(spec.getColumnName());
+        Reference ref = new Reference(spec.getName(), primaryColumn);
+        foreignColumn.reference(ref);
+    }
+
+    private static <T> T get(Future<T> future) throws SQLException {
+        if (future == null) return null;
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SchemaException("interrupted while reading metadata", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) throw (SQLException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new SchemaException(cause);
         }
     }
+
+    /**
+     * Accepts the tables with the given names.
+     */
+    private static class NamedTablesFilter implements ExplicitTableFilter {
+        private Set<String> tableNames;
+
+        public NamedTablesFilter(Set<String> tableNames) {
+            this.tableNames = tableNames;
+        }
+
+        public boolean accept(Table table) {
+            return tableNames.contains(table.name());
+        }
+
+        public Set<String> getIncludedTables() {
+            return tableNames;
+        }
+
+        public Set<String> getExcludedTables() {
+            return Collections.emptySet();
+        }
+
+        public Set<String> getIncludedPrefixes() {
+            return Collections.emptySet();
+        }
+
+        public Set<String> getExcludedPrefixes() {
+            return Collections.emptySet();
+        }
+    }
+
+    /**
+     * The metadata read for a schema, before it's attached to the tables.
+     */
+    private static class MetaData {
+        private MultiValueMap<String, Column.Spec> columns;
+        private Map<String, PrimaryKey.Spec> primaryKeys;
+        private List<Reference.Spec> foreignKeys = Collections.emptyList();
+        private List<Index.Spec> indicies;
+        private List<Sequence> sequences;
+    }
+
+    /**
+     * Reads one kind of metadata over its own connection.
+     */
+    private abstract class Phase<T> implements Callable<T> {
+        public T call() throws Exception {
+            Connection connection = dataSource.getConnection();
+            try {
+                return read(new SingleConnectionDataSource(connection, true));
+            } finally {
+                connection.close();
+            }
+        }
+
+        protected abstract T read(DataSource phaseDataSource) throws SQLException;
+    }
 }
@@ -22,14 +22,18 @@
 
 package com.oracle2hsqldb;
 
-import java.util.Iterator;
+import java.io.IOException;
 import java.util.List;
 
 /**
+ * Renders schema objects as DDL.  The render methods append to any {@link Appendable}, so a statement
+ * can go straight into a buffered file or a reused StringBuilder; the write methods return it as a String.
+ *
  * @author Moses Hohman
  */
 public class SchemaWriter {
     private boolean viewsAsTables = false;
+    private long cachedTableThreshold = -1;
     private Configuration configuration;
 
     public SchemaWriter(Configuration configuration) {
@@ -40,6 +44,20 @@ public class SchemaWriter {
         this.viewsAsTables = viewsAsTables;
     }
 
+    /**
+     * Create the tables whose statistics put them above this many bytes as CACHED tables, if the dialect
+     * has them.  Tables without statistics, and all tables if this is negative (the default), are created
+     * with the database's default type.
+     */
+    public void setCachedTableThreshold(long cachedTableThreshold) {
+        this.cachedTableThreshold = cachedTableThreshold;
+    }
+
+    public boolean isCached(Table table) {
+        return cachedTableThreshold >= 0 && configuration.dialect().supportsCachedTables()
+            && table.estimatedSize() != null && table.estimatedSize() > cachedTableThreshold;
+    }
+
     public String write(Schema schema) {
     	return "CREATE SCHEMA " + schema.name() + " AUTHORIZATION DBA\n";
     }
@@ -49,81 +67,102 @@ public class SchemaWriter {
     }
 
     public String write(Table table) {
+        try {
+            return render(table, new StringBuilder()).toString();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public <A extends Appendable> A render(Table table, A out) throws IOException {
         if (!viewsAsTables && table instanceof View && configuration.dialect().supportsViews()) {
-            return createView((View) table);
+            createView((View) table, out);
         } else {
-            return createTable(table);
+            createTable(table, out);
         }
+        return out;
     }
-    
-    private String createTable(Table table) {
-        StringBuilder result = new StringBuilder("CREATE TABLE ").append(table.name()).append(" (\n");
-        for (Iterator<Column> columns = table.columns().iterator(); columns.hasNext();) {
-            Column column = (Column) columns.next();
-            result.append("\t").append(write(column));
-            if (columns.hasNext() || table.indicies().size() > 0) {
-                result.append(",");
-            }
-            result.append("\n");
+
+    private void createTable(Table table, Appendable out) throws IOException {
+        out.append(isCached(table) ? "CREATE CACHED TABLE " : "CREATE TABLE ").append(table.name()).append(" (\n");
+        boolean first = true;
+        for (Column column : table.columns()) {
+            first = startClause(first, out);
+            render(column, out);
         }
-        for (Iterator<Index> uniques = table.indicies().iterator(); uniques.hasNext();) {
-            Index index = uniques.next();
+        // single column keys are declared inline by render(Column), composite keys
+        // need a table constraint so HSQLDB indexes the columns in key order
+        PrimaryKey primaryKey = table.primaryKey();
+        if (configuration.supportsPrimaryKeys() && primaryKey != null && primaryKey.columns().size() > 1) {
+            first = startClause(first, out);
+            constraint(primaryKey.name(), "PRIMARY KEY", primaryKey.columns(), out);
+        }
+        for (Index index : table.indicies()) {
             // skip non-unique indexes for right now, we will create them later.
-            if (!index.isUnique()) {
-            	continue;
-            }
-            result.append("\t");
-            if (index.name() != null) {
-                result.append("CONSTRAINT ").append(index.name()).append(" ");
-            }
-            result.append("UNIQUE (");
-            result.append(getCommaSeparatedColString(index.columns()));
-            result.append(")");
-            if (uniques.hasNext()) {
-                result.append(",");
+            if (index.isUnique()) {
+                first = startClause(first, out);
+                constraint(index.name(), "UNIQUE", index.columns(), out);
             }
-            result.append("\n");
         }
+        out.append("\n)");
+    }
+
+    private static boolean startClause(boolean first, Appendable out) throws IOException {
+        out.append(first ? "\t" : ",\n\t");
+        return false;
+    }
 
-        return result.append(")").toString();
+    private void constraint(String name, String type, List<Column> columns, Appendable out) throws IOException {
+        if (name != null) {
+            out.append("CONSTRAINT ").append(name).append(" ");
+        }
+        out.append(type).append(" (");
+        appendColumnNames(columns, out);
+        out.append(")");
     }
 
-    private String createView(View view) {
-        StringBuilder result = new StringBuilder();
-        result.append("CREATE VIEW ").append(view.name()).append(" AS ").append(view.text());
-        return result.toString();
+    private void createView(View view, Appendable out) throws IOException {
+        out.append("CREATE VIEW ").append(view.name()).append(" AS ").append(view.text());
     }
 
     public String write(Column column) {
-        StringBuilder result = new StringBuilder(column.name());
+        try {
+            return render(column, new StringBuilder()).toString();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public <A extends Appendable> A render(Column column, A out) throws IOException {
+        out.append(column.name());
         String typeName = getTypeName(column);
-        result.append(" ").append(typeName);
+        out.append(" ").append(typeName);
         int size = getSize(column);
         if (size > 0 && typeIsScalable(typeName)) {
-            result.append("(").append(size).append(")");
+            out.append("(").append(String.valueOf(size)).append(")");
         }
         if (column.defaultValue() != null) {
-            result.append(" DEFAULT ");
-            appendDefaultValue(column, result);
+            out.append(" DEFAULT ");
+            appendDefaultValue(column, out);
         }
         boolean alreadyNotNull = false;
         if (configuration.supportsPrimaryKeys()) {
             if (column.isPrimaryKey()) {
                 alreadyNotNull = true;
-                if (configuration.dialect().supportsIdentityColumns() && "INTEGER".equals(configuration.dialect().getTypeName(column))) {
-                    appendIdentityColumnString(result);
+                if (configuration.dialect().supportsIdentityColumns() && "INTEGER".equals(typeName)) {
+                    appendIdentityColumnString(out);
                 }
-                result.append(" PRIMARY KEY");
+                out.append(" PRIMARY KEY");
             }
         }
         if (!alreadyNotNull && !column.isNullable()) {
-            result.append(" NOT NULL");
+            out.append(" NOT NULL");
         }
-        return result.toString();
+        return out;
     }
 
-    private StringBuilder appendDefaultValue(Column column, StringBuilder result) {
-        return result.append(configuration.dialect().formatDefaultValue(column));
+    private void appendDefaultValue(Column column, Appendable out) throws IOException {
+        out.append(configuration.dialect().formatDefaultValue(column));
     }
 
     private boolean typeIsScalable(String typeName) {
@@ -138,38 +177,56 @@ public class SchemaWriter {
         return configuration.dialect().getSize(column);
     }
 
-    private void appendIdentityColumnString(StringBuilder result) {
-        result.append(" ").append(configuration.dialect().getIdentityColumnString());
+    private void appendIdentityColumnString(Appendable out) throws IOException {
+        out.append(" ").append(configuration.dialect().getIdentityColumnString());
     }
 
     public String write(Sequence sequence) {
+        try {
+            return render(sequence, new StringBuilder()).toString();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public <A extends Appendable> A render(Sequence sequence, A out) throws IOException {
         if (!configuration.dialect().supportsSequences()) throw new IllegalStateException(configuration.dialect() + " does not support sequences");
         // This syntax is vaild for Oracle and HSQLDB
-        StringBuilder result = new StringBuilder();
-        result.append("CREATE SEQUENCE ").append(sequence.name());
+        out.append("CREATE SEQUENCE ").append(sequence.name());
         if (sequence.value() != null) {
-            result.append(" START WITH ").append(sequence.value());
+            out.append(" START WITH ").append(sequence.value().toString());
         }
-        return result.toString();
+        return out;
     }
 
-    private String getCommaSeparatedColString(List<Column> cols) {
-    	StringBuilder result = new StringBuilder();
+    private static void appendColumnNames(List<Column> cols, Appendable out) throws IOException {
+        boolean first = true;
         for (Column col : cols) {
-            if (result.length() != 0) {
-                result.append(", ");
+            if (!first) {
+                out.append(", ");
             }
-            result.append(col.name());
+            out.append(col.name());
+            first = false;
         }
-    	
-    	return result.toString();
     }
-    
+
 	public String write(Index i) {
-		if (!i.isUnique()) { // unique indices were created as part of the table definition
-			return String.format("CREATE INDEX %s ON %s(%s)", i.name(), i.columns().get(0).owner().name(), getCommaSeparatedColString(i.columns()));
+		try {
+			return render(i, new StringBuilder()).toString();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
 		}
+	}
 
-		return "";
+	/**
+	 * Appends nothing for unique indices, they were created as part of the table definition.
+	 */
+	public <A extends Appendable> A render(Index i, A out) throws IOException {
+		if (!i.isUnique()) {
+			out.append("CREATE INDEX ").append(i.name()).append(" ON ").append(i.columns().get(0).owner().name()).append("(");
+			appendColumnNames(i.columns(), out);
+			out.append(")");
+		}
+		return out;
 	}
 }
\ No newline at end of file
@@ -22,10 +22,14 @@
 
 package com.oracle2hsqldb;
 
+import java.io.Serializable;
+
 /**
  * @author Moses Hohman
  */
-public class Sequence {
+public class Sequence implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private String name;
     private Long value;
 
@@ -0,0 +1,81 @@
+/*
+ * Schemamule, a library for automating database schema tasks
+ * Copyright (C) 2006, Moses M. Hohman and Rhett Sutphin
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St., 5th Floor, Boston, MA  02110-1301
+
+ * To contact the authors, send email to:
+ * { mmhohman OR rsutphin } AT sourceforge DOT net
+ */
+
+package com.oracle2hsqldb;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The driving tables of a subset of a schema's rows: the tables whose rows are chosen, by a condition, a
+ * sample or both.  The rest of the subset is the rows of the tables they reference which the chosen rows
+ * need, found by {@link DataCopier}.
+ * <p>
+ * A subset's rows are selected twice, once to find the rows they reference and once to copy them, so a
+ * sample needs a seed to pick the same rows both times, and the source needs to be still or copied as a
+ * snapshot.
+ */
+public class Subset {
+    public static final long DEFAULT_SEED = 1;
+
+    private Map<String, Driver> drivers = new LinkedHashMap<String, Driver>();
+    private long seed = DEFAULT_SEED;
+
+    /**
+     * @param condition an SQL condition choosing the table's rows, or null for all of them
+     * @param samplePercent the percentage of the table's rows to sample, or null for all of them
+     */
+    public void addDrivingTable(String tableName, String condition, Double samplePercent) {
+        drivers.put(tableName, new Driver(condition, samplePercent));
+    }
+
+    public Map<String, Driver> drivingTables() {
+        return Collections.unmodifiableMap(drivers);
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    public void seed(long seed) {
+        this.seed = seed;
+    }
+
+    public static class Driver {
+        private String condition;
+        private Double samplePercent;
+
+        public Driver(String condition, Double samplePercent) {
+            this.condition = condition;
+            this.samplePercent = samplePercent;
+        }
+
+        public String condition() {
+            return condition;
+        }
+
+        public Double samplePercent() {
+            return samplePercent;
+        }
+    }
+}
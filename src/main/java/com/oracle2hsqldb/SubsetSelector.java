@@ -0,0 +1,333 @@
+/*
+ * Schemamule, a library for automating database schema tasks
+ * Copyright (C) 2006, Moses M. Hohman and Rhett Sutphin
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St., 5th Floor, Boston, MA  02110-1301
+
+ * To contact the authors, send email to:
+ * { mmhohman OR rsutphin } AT sourceforge DOT net
+ */
+
+package com.oracle2hsqldb;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Finds the rows of a {@link Subset}.  The driving tables' rows are read for the values of their foreign
+ * keys, then the referenced tables' rows with those key values are read, a batch of values at a time, for
+ * the values of their own foreign keys, and so on until no new values turn up.  Only the key columns are
+ * read.  A composite foreign key's columns share its name, and its rows are selected by their whole
+ * tuple of values, so only the rows actually referenced are.  The rows are remembered as the chunks
+ * which selected them, each new chunk leaving out the key values of the rows already selected, so no
+ * row is selected twice.
+ */
+class SubsetSelector {
+    // Oracle rejects IN lists with more than 1000 expressions (ORA-01795); composite keys' OR lists
+    // are kept to as many bind variables
+    private static final int BATCH_SIZE = 1000;
+
+    private final Logger log = Logger.getLogger(getClass());
+
+    private DataCopier copier;
+    private Connection from;
+    private String schemaName;
+    private String asOf;
+    private Map<Table, Node> nodes = new LinkedHashMap<Table, Node>();
+    private LinkedList<Node> work = new LinkedList<Node>();
+
+    /**
+     * @param asOf the snapshot clause to read the rows as of, the copy's, or null
+     */
+    public SubsetSelector(DataCopier copier, Connection from, String schemaName, String asOf) {
+        this.copier = copier;
+        this.from = from;
+        this.schemaName = schemaName;
+        this.asOf = asOf;
+    }
+
+    /**
+     * @return the chunks selecting the subset's rows of each table with any
+     */
+    public Map<Table, List<TableChunk>> select(Subset subset, Schema schema) throws SQLException {
+        List<TableChunk> driving = new ArrayList<TableChunk>();
+        for (Map.Entry<String, Subset.Driver> entry : subset.drivingTables().entrySet()) {
+            Table table = schema.findTable(entry.getKey());
+            if (table == null) {
+                log.warn("Driving table " + entry.getKey() + " is not in schema " + schema.name());
+                continue;
+            }
+            addWithReferencedTables(table);
+            driving.add(drivingChunk(table, entry.getValue(), subset.seed()));
+        }
+        for (TableChunk chunk : driving) {
+            Node node = nodes.get(chunk.table());
+            node.chunks.add(chunk);
+            read(node, chunk);
+        }
+        while (!work.isEmpty()) {
+            Node node = work.removeFirst();
+            node.queued = false;
+            for (List<Column> key : node.keys) {
+                Set<List<Object>> wanted = node.pending.remove(key);
+                if (wanted == null) continue;
+                // another key's rows may have covered them since
+                wanted.removeAll(node.covered.get(key));
+                for (TableChunk chunk : chunks(node.table, key, wanted)) {
+                    node.chunks.add(chunk);
+                    read(node, chunk);
+                }
+            }
+        }
+
+        Map<Table, List<TableChunk>> result = new HashMap<Table, List<TableChunk>>();
+        for (Node node : nodes.values()) {
+            if (!node.chunks.isEmpty()) result.put(node.table, node.chunks);
+        }
+        return result;
+    }
+
+    private TableChunk drivingChunk(Table table, Subset.Driver driver, long seed) {
+        String sample = null;
+        if (driver.samplePercent() != null) {
+            sample = copier.getDialect().getSampleClause(driver.samplePercent(), seed);
+            if (sample == null) throw new SchemaException(copier.getDialect().getClass().getSimpleName() + " can not sample " + table.name());
+        }
+        return new TableChunk(table, sample, driver.condition(), Collections.emptyList());
+    }
+
+    /**
+     * Adds the table and every table it references, directly or not, noting the keys they reference.
+     */
+    private void addWithReferencedTables(Table table) {
+        LinkedList<Table> unvisited = new LinkedList<Table>();
+        unvisited.add(table);
+        while (!unvisited.isEmpty()) {
+            Table next = unvisited.removeFirst();
+            if (nodes.containsKey(next)) continue;
+            Node node = new Node(next);
+            nodes.put(next, node);
+            node.foreignKeys.addAll(foreignKeys(next));
+            for (ForeignKey foreignKey : node.foreignKeys) {
+                unvisited.add(foreignKey.key.get(0).owner());
+            }
+        }
+        for (Node node : nodes.values()) {
+            for (ForeignKey foreignKey : node.foreignKeys) {
+                nodes.get(foreignKey.key.get(0).owner()).addKey(foreignKey.key);
+            }
+        }
+    }
+
+    /**
+     * Groups the table's referencing columns into foreign keys by name, each column paired with the one
+     * it references in the order of the referenced table's columns, so foreign keys on the same key
+     * agree on its order.
+     */
+    private static List<ForeignKey> foreignKeys(Table table) {
+        Map<String, List<Column>> byName = new LinkedHashMap<String, List<Column>>();
+        for (Column column : table.columns()) {
+            Reference reference = column.reference();
+            if (reference == null || reference.refersTo() == null || reference.refersTo().owner() == null) continue;
+            // unnamed references can't be grouped, each is taken on its own
+            String name = reference.name() == null ? "column " + column.name() : reference.name();
+            List<Column> columns = byName.get(name);
+            if (columns == null) byName.put(name, columns = new ArrayList<Column>());
+            columns.add(column);
+        }
+        List<ForeignKey> foreignKeys = new ArrayList<ForeignKey>();
+        for (List<Column> columns : byName.values()) {
+            Collections.sort(columns, new Comparator<Column>() {
+                public int compare(Column a, Column b) {
+                    Column referencedA = a.reference().refersTo();
+                    Column referencedB = b.reference().refersTo();
+                    return referencedA.owner().columns().indexOf(referencedA) - referencedB.owner().columns().indexOf(referencedB);
+                }
+            });
+            ForeignKey foreignKey = new ForeignKey();
+            for (Column column : columns) {
+                foreignKey.columns.add(column);
+                foreignKey.key.add(column.reference().refersTo());
+            }
+            foreignKeys.add(foreignKey);
+        }
+        return foreignKeys;
+    }
+
+    /**
+     * @return chunks selecting the rows with the key values, by an IN list for a single column key and an
+     *      OR of each tuple's column values for a composite one
+     */
+    private List<TableChunk> chunks(Table table, List<Column> key, Set<List<Object>> values) {
+        List<TableChunk> chunks = new ArrayList<TableChunk>();
+        int perChunk = Math.max(1, BATCH_SIZE / key.size());
+        Iterator<List<Object>> iterator = values.iterator();
+        while (iterator.hasNext()) {
+            List<Object> args = new ArrayList<Object>();
+            StringBuilder condition = new StringBuilder();
+            for (int tuples = 0; iterator.hasNext() && tuples < perChunk; tuples++) {
+                List<Object> tuple = iterator.next();
+                if (key.size() == 1) {
+                    condition.append(tuples == 0 ? "?" : ", ?");
+                } else {
+                    if (tuples > 0) condition.append(" OR ");
+                    condition.append("(");
+                    for (int i = 0; i < key.size(); i++) {
+                        if (i > 0) condition.append(" AND ");
+                        condition.append(key.get(i).name()).append(" = ?");
+                    }
+                    condition.append(")");
+                }
+                args.addAll(tuple);
+            }
+            if (key.size() == 1) condition.insert(0, key.get(0).name() + " IN (").append(")");
+            chunks.add(new TableChunk(table, condition.toString(), args));
+        }
+        return chunks;
+    }
+
+    /**
+     * Reads the key values of the chunk's rows, and queues the values they reference which haven't been
+     * read yet.
+     */
+    private void read(Node node, TableChunk chunk) throws SQLException {
+        List<Column> columns = new ArrayList<Column>();
+        for (List<Column> key : node.keys) {
+            addAbsent(key, columns);
+        }
+        for (ForeignKey foreignKey : node.foreignKeys) {
+            addAbsent(foreignKey.columns, columns);
+        }
+        if (columns.isEmpty()) return;
+        PreparedStatement query = from.prepareStatement(copier.selectSql(schemaName, chunk, columns, asOf), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        try {
+            query.setFetchSize(copier.getFetchSize());
+            for (int i = 0; i < chunk.args().size(); i++) {
+                query.setObject(i + 1, chunk.args().get(i));
+            }
+            ResultSet rows = query.executeQuery();
+            try {
+                int count = 0;
+                Map<Column, Object> row = new HashMap<Column, Object>();
+                while (rows.next()) {
+                    count++;
+                    for (int i = 0; i < columns.size(); i++) {
+                        Column column = columns.get(i);
+                        row.put(column, normalize(copier.getValue(rows, i + 1, column.type())));
+                    }
+                    for (List<Column> key : node.keys) {
+                        List<Object> tuple = tuple(key, row);
+                        if (tuple != null) node.covered.get(key).add(tuple);
+                    }
+                    for (ForeignKey foreignKey : node.foreignKeys) {
+                        List<Object> tuple = tuple(foreignKey.columns, row);
+                        if (tuple != null) want(foreignKey.key, tuple);
+                    }
+                }
+                if (log.isDebugEnabled()) log.debug("Selected " + count + " rows of " + chunk);
+            } finally {
+                rows.close();
+            }
+        } finally {
+            query.close();
+        }
+    }
+
+    private static void addAbsent(List<Column> add, List<Column> to) {
+        for (Column column : add) {
+            if (!to.contains(column)) to.add(column);
+        }
+    }
+
+    /**
+     * @return the row's values of the columns, or null if any is null, as a foreign key with a null
+     *      column references nothing
+     */
+    private static List<Object> tuple(List<Column> columns, Map<Column, Object> row) {
+        Object[] values = new Object[columns.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = row.get(columns.get(i));
+            if (values[i] == null) return null;
+        }
+        return Arrays.asList(values);
+    }
+
+    private void want(List<Column> key, List<Object> tuple) {
+        Node node = nodes.get(key.get(0).owner());
+        if (node.covered.get(key).contains(tuple)) return;
+        Set<List<Object>> pending = node.pending.get(key);
+        if (pending == null) node.pending.put(key, pending = new LinkedHashSet<List<Object>>());
+        if (pending.add(tuple) && !node.queued) {
+            node.queued = true;
+            work.add(node);
+        }
+    }
+
+    /**
+     * Numbers read from a foreign key and from the key it references can differ in class and scale.
+     */
+    static Object normalize(Object value) {
+        if (!(value instanceof Number)) return value;
+        BigDecimal decimal = value instanceof BigDecimal ? (BigDecimal) value : new BigDecimal(value.toString());
+        return decimal.signum() == 0 ? BigDecimal.ZERO : decimal.stripTrailingZeros();
+    }
+
+    private static class ForeignKey {
+        // the referencing columns, and the columns they reference in the same order
+        final List<Column> columns = new ArrayList<Column>();
+        final List<Column> key = new ArrayList<Column>();
+    }
+
+    private static class Node {
+        final Table table;
+        // the keys of this table the subset's tables reference, in the order they were found
+        final List<List<Column>> keys = new ArrayList<List<Column>>();
+        // the foreign keys of this table referencing the subset's tables
+        final List<ForeignKey> foreignKeys = new ArrayList<ForeignKey>();
+        // the values of each key in the rows selected so far, and those still to select
+        final Map<List<Column>, Set<List<Object>>> covered = new HashMap<List<Column>, Set<List<Object>>>();
+        final Map<List<Column>, Set<List<Object>>> pending = new HashMap<List<Column>, Set<List<Object>>>();
+        final List<TableChunk> chunks = new ArrayList<TableChunk>();
+        boolean queued = false;
+
+        Node(Table table) {
+            this.table = table;
+        }
+
+        void addKey(List<Column> key) {
+            if (covered.containsKey(key)) return;
+            keys.add(key);
+            covered.put(key, new HashSet<List<Object>>());
+        }
+    }
+}
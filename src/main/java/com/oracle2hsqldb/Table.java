@@ -22,10 +22,14 @@
 
 package com.oracle2hsqldb;
 
+import java.io.Serializable;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -33,12 +37,30 @@ import java.util.Map;
 /**
  * @author Moses Hohman
  */
-public class Table {
+public class Table implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final Column[] NO_COLUMNS = new Column[0];
+    // narrower tables are searched by name instead of keeping a map
+    private static final int LINEAR_SEARCH_LIMIT = 8;
+
     private String name;
     private PrimaryKey primaryKey;
-    private List<Column> columns = new LinkedList<Column>();
-    private Map<String, Index> indicies = new HashMap<String, Index>();
+    private Column[] columns = NO_COLUMNS;
+    private int columnCount;
+    private Map<String, Column> columnsByName;
+    private Map<String, Index> indicies = new LinkedHashMap<String, Index>();
     private Type type;
+    // optimizer statistics, null when the source doesn't have them
+    private Long rowCount;
+    private Integer averageRowLength;
+    // bumped whenever the columns, primary key or indexes change
+    private int modCount;
+    private int rolesModCount = -1;
+    private Map<Column, Integer> roles;
+    private boolean frozen;
+    private List<Column> frozenColumns;
+    private List<Index> frozenIndicies;
 
     public Table(String name) {
         this(name, Type.TABLE);
@@ -57,34 +79,98 @@ public class Table {
         return type;
     }
 
+    public Long rowCount() {
+        return rowCount;
+    }
+
+    public Integer averageRowLength() {
+        return averageRowLength;
+    }
+
+    public void statistics(Long rowCount, Integer averageRowLength) {
+        checkNotFrozen();
+        this.rowCount = rowCount;
+        this.averageRowLength = averageRowLength;
+    }
+
+    /**
+     * @return the number of bytes of row data according to the statistics, or null if there aren't any
+     */
+    public Long estimatedSize() {
+        if (rowCount == null || averageRowLength == null) return null;
+        return rowCount * averageRowLength;
+    }
+
     public List<Column> columns() {
-        return Collections.unmodifiableList(columns);
+        if (frozen) return frozenColumns;
+        return new AbstractList<Column>() {
+            public Column get(int index) {
+                if (index >= columnCount) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + columnCount);
+                return columns[index];
+            }
+
+            public int size() {
+                return columnCount;
+            }
+        };
     }
 
     public Column findColumn(String name) {
-        Iterator<Column> cols = columns.iterator();
-        while (cols.hasNext()) {
-            Column col = cols.next();
-            if (col.name().equals(name)) {
-                return col;
+        if (columnsByName != null) return columnsByName.get(name);
+        for (int i = 0; i < columnCount; i++) {
+            if (columns[i].name().equals(name)) {
+                return columns[i];
             }
         }
         return null;
     }
 
     public void addColumn(Column column) {
-        columns.add(column);
+        checkNotFrozen();
+        if (columnCount == columns.length) {
+            columns = Arrays.copyOf(columns, Math.max(4, columnCount + (columnCount >> 1)));
+        }
+        columns[columnCount++] = column;
+        if (columnsByName == null && columnCount > LINEAR_SEARCH_LIMIT) {
+            columnsByName = new HashMap<String, Column>();
+            for (int i = columnCount - 1; i >= 0; i--) {
+                // backwards, so the first of any columns with the same name wins
+                columnsByName.put(columns[i].name(), columns[i]);
+            }
+        } else if (columnsByName != null && !columnsByName.containsKey(column.name())) {
+            columnsByName.put(column.name(), column);
+        }
         column.owner(this);
+        changed();
+    }
+
+    /**
+     * Trims the storage of this table and its indexes to their contents, and drops what was worked out
+     * for its columns' roles.  Called once the table is read.
+     */
+    public void compact() {
+        if (frozen) return;
+        if (columns.length != columnCount) {
+            columns = columnCount == 0 ? NO_COLUMNS : Arrays.copyOf(columns, columnCount);
+        }
+        for (Index index : indicies.values()) {
+            index.compact();
+        }
+        roles = null;
+        rolesModCount = -1;
     }
 
     public void primaryKey(PrimaryKey pk) {
+        checkNotFrozen();
         Iterator<Column> pkColumns = pk.columns().iterator();
         while (pkColumns.hasNext()) {
-            if (!columns.contains(pkColumns.next())) {
+            Column pkColumn = pkColumns.next();
+            if (!pkColumn.equals(findColumn(pkColumn.name()))) {
                 throw new IllegalArgumentException("No such column");
             }
         }
         this.primaryKey = pk;
+        changed();
     }
 
     public PrimaryKey primaryKey() {
@@ -93,13 +179,18 @@ public class Table {
 
     public String toString() {
         StringBuffer result = new StringBuffer("[Table ").append(name).append(":").append(System.getProperty("line.separator"));
-        for(Iterator<Column> cols = columns.iterator(); cols.hasNext(); ) {
+        for(Iterator<Column> cols = columns().iterator(); cols.hasNext(); ) {
             result.append("\t").append(cols.next()).append(System.getProperty("line.separator"));
         }
         return result.append("]").toString();
     }
 
+    /**
+     * @return the index with this name or, failing that, the first one whose name starts with it
+     */
     public Index findIndex(String name) {
+        Index index = index(name);
+        if (index != null) return index;
     	for (String indexName : indicies.keySet()) {
 			if (indexName.startsWith(name)) {
 				return indicies.get(indexName);
@@ -108,16 +199,28 @@ public class Table {
         return null;
     }
 
+    /**
+     * @return the index with exactly this name, or null
+     */
+    public Index index(String name) {
+        return indicies.get(name);
+    }
+
     public void addIndex(Index index) {
+        checkNotFrozen();
         indicies.put(index.name(), index);
+        changed();
     }
 
     public List<Index> indicies() {
+        if (frozen) return frozenIndicies;
         return Collections.unmodifiableList(new ArrayList<Index>(indicies.values()));
     }
 
     public void removeIndex(Index index) {
+        checkNotFrozen();
         indicies.remove(index.name());
+        changed();
     }
 
     public List<Index> indexFor(Column column) {
@@ -132,6 +235,109 @@ public class Table {
         return result;
     }
 
+    void changed() {
+        checkNotFrozen();
+        modCount++;
+    }
+
+    /**
+     * @return an unfrozen copy of this table with copies of its columns, key and indexes; the column
+     *      copies are recorded against the originals and don't have their references yet
+     */
+    Table copy(Map<Column, Column> columnCopies) {
+        Table copy = emptyCopy();
+        copy.statistics(rowCount, averageRowLength);
+        for (int i = 0; i < columnCount; i++) {
+            Column column = columns[i].copy();
+            columnCopies.put(columns[i], column);
+            copy.addColumn(column);
+        }
+        if (primaryKey != null) {
+            PrimaryKey key = new PrimaryKey();
+            key.name(primaryKey.name());
+            for (Column column : primaryKey.columns()) {
+                key.addColumn(copy.copyOf(column, columnCopies));
+            }
+            copy.primaryKey(key);
+        }
+        for (Index index : indicies.values()) {
+            Index indexCopy = new Index(index.name(), index.isUnique());
+            copy.addIndex(indexCopy);
+            for (Column column : index.columns()) {
+                indexCopy.addColumn(copy.copyOf(column, columnCopies));
+            }
+        }
+        return copy;
+    }
+
+    private Column copyOf(Column column, Map<Column, Column> columnCopies) {
+        Column copy = columnCopies.get(column);
+        return copy != null ? copy : findColumn(column.name());
+    }
+
+    protected Table emptyCopy() {
+        return new Table(name, type);
+    }
+
+    void freeze() {
+        for (int i = 0; i < columnCount; i++) {
+            // works the roles out once, while there's only one thread looking
+            columns[i].isPrimaryKey();
+        }
+        for (int i = 0; i < columnCount; i++) {
+            columns[i].freeze();
+        }
+        if (primaryKey != null) primaryKey.freeze();
+        for (Index index : indicies.values()) {
+            index.freeze();
+        }
+        frozenColumns = Collections.unmodifiableList(Arrays.asList(columns));
+        frozenIndicies = Collections.unmodifiableList(new ArrayList<Index>(indicies.values()));
+        frozen = true;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) throw new IllegalStateException("table " + name + " is frozen");
+    }
+
+    int modCount() {
+        return modCount;
+    }
+
+    /**
+     * @return the Column role flags of the column, worked out for all columns at once after each change
+     */
+    int rolesOf(Column column) {
+        if (rolesModCount != modCount) {
+            roles = new HashMap<Column, Integer>();
+            if (primaryKey != null) {
+                List<Column> keyColumns = primaryKey.columns();
+                int role = keyColumns.size() == 1 ? Column.PRIMARY_KEY_MEMBER | Column.PRIMARY_KEY : Column.PRIMARY_KEY_MEMBER;
+                for (Column keyColumn : keyColumns) {
+                    addRole(keyColumn, role);
+                }
+            }
+            for (Index index : indicies.values()) {
+                int role = index.columns().size() == 1 ? Column.UNIQUE_KEY_MEMBER | Column.UNIQUE : Column.UNIQUE_KEY_MEMBER;
+                for (Column indexed : index.columns()) {
+                    addRole(indexed, role);
+                }
+            }
+            rolesModCount = modCount;
+        }
+        Integer role = roles.get(column);
+        return role == null ? 0 : role.intValue();
+    }
+
+    private void addRole(Column column, int role) {
+        Integer existing = roles.get(column);
+        roles.put(column, existing == null ? role : existing.intValue() | role);
+    }
+
     public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof Table)) return false;
@@ -147,7 +353,9 @@ public class Table {
         return (name != null ? name.hashCode() : 0);
     }
 
-    public static class Type {
+    public static class Type implements Serializable {
+        private static final long serialVersionUID = 1L;
+
         private static Map<String, Type> byName = new HashMap<String, Type>();
         public static final Type TABLE = new Type("TABLE");
         public static final Type VIEW = new Type("VIEW");
@@ -177,11 +385,17 @@ public class Table {
         public String toString() {
             return getJdbcName();
         }
+
+        private Object readResolve() {
+            return getByJdbcName(typeStr);
+        }
     }
 
     public static class Spec {
         private String tableName;
         private Table.Type tableType;
+        private Long rowCount;
+        private Integer averageRowLength;
 
         public Spec(String tableName, String tableTypeName) {
             this.tableName = tableName;
@@ -196,8 +410,15 @@ public class Table {
             return tableType;
         }
 
+        public void setStatistics(Long rowCount, Integer averageRowLength) {
+            this.rowCount = rowCount;
+            this.averageRowLength = averageRowLength;
+        }
+
         public Table getTable() {
-            return new Table(getTableName(), getTableType());
+            Table table = new Table(getTableName(), getTableType());
+            table.statistics(rowCount, averageRowLength);
+            return table;
         }
     }
 }
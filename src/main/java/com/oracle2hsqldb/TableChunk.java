@@ -0,0 +1,92 @@
+/*
+ * Schemamule, a library for automating database schema tasks
+ * Copyright (C) 2006, Moses M. Hohman and Rhett Sutphin
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St., 5th Floor, Boston, MA  02110-1301
+
+ * To contact the authors, send email to:
+ * { mmhohman OR rsutphin } AT sourceforge DOT net
+ */
+
+package com.oracle2hsqldb;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The rows of a table selected by an SQL condition, so a big table can be copied a piece at a time by
+ * several threads, or only the rows a subset needs copied.  The rows can also be a sample of the table.
+ * A chunk with neither is the whole table.
+ */
+public class TableChunk {
+    private Table table;
+    private String sample;
+    private String condition;
+    private List<Object> args;
+
+    public TableChunk(Table table) {
+        this(table, null, Collections.emptyList());
+    }
+
+    /**
+     * @param condition an SQL condition on the table's columns, with a ? for each of the args
+     */
+    public TableChunk(Table table, String condition, List<Object> args) {
+        this(table, null, condition, args);
+    }
+
+    /**
+     * @param sample a clause following the table name to read a sample of its rows, like Oracle's SAMPLE
+     */
+    public TableChunk(Table table, String sample, String condition, List<Object> args) {
+        this.table = table;
+        this.sample = sample;
+        this.condition = condition;
+        this.args = args;
+    }
+
+    public Table table() {
+        return table;
+    }
+
+    /**
+     * @return the clause sampling the table's rows, or null for all of them
+     */
+    public String sample() {
+        return sample;
+    }
+
+    /**
+     * @return the condition selecting the chunk's rows, or null for every row of the table
+     */
+    public String condition() {
+        return condition;
+    }
+
+    public List<Object> args() {
+        return args;
+    }
+
+    public boolean isWholeTable() {
+        return condition == null && sample == null;
+    }
+
+    public String toString() {
+        StringBuilder result = new StringBuilder(table.name());
+        if (sample != null) result.append(" ").append(sample);
+        if (condition != null) result.append(" WHERE ").append(condition).append(" ").append(args);
+        return result.toString();
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Schemamule, a library for automating database schema tasks
+ * Copyright (C) 2006, Moses M. Hohman and Rhett Sutphin
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St., 5th Floor, Boston, MA  02110-1301
+
+ * To contact the authors, send email to:
+ * { mmhohman OR rsutphin } AT sourceforge DOT net
+ */
+
+package com.oracle2hsqldb;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Matches table names against exact names, globs (<code>*</code> and <code>?</code>) and regular expressions.
+ * <p>
+ * Names are kept in a hash set and globs of the form <code>PREFIX*</code> in a prefix trie, so matching them
+ * costs O(name length) however many there are.  The remaining globs and regexes are compiled together into
+ * a single alternation as they are added, instead of being tried one after another.  A matcher which is
+ * no longer added to can be shared by the threads reading a schema.
+ */
+public class TableNameMatcher {
+    private Set<String> names = new LinkedHashSet<String>();
+    private PrefixTrie prefixes = new PrefixTrie();
+    private Set<String> regexes = new LinkedHashSet<String>();
+    private volatile Pattern combined;
+    // literal prefixes of every glob and regex, or null once one without a literal prefix is added
+    private Set<String> literalPrefixes = new LinkedHashSet<String>();
+    private Set<String> wholePrefixes = new LinkedHashSet<String>();
+
+    public void addName(String name) {
+        names.add(name);
+    }
+
+    public void addGlob(String glob) {
+        int wildcard = indexOfWildcard(glob);
+        if (wildcard < 0) {
+            addName(glob);
+        } else if (wildcard == glob.length() - 1 && glob.charAt(wildcard) == '*') {
+            String prefix = glob.substring(0, wildcard);
+            prefixes.add(prefix);
+            wholePrefixes.add(prefix);
+            addLiteralPrefix(prefix);
+        } else {
+            addRegexInternal(globToRegex(glob));
+            addLiteralPrefix(glob.substring(0, wildcard));
+        }
+    }
+
+    public void addRegex(String regex) {
+        Pattern.compile(regex); // fail early on a bad expression
+        addRegexInternal(regex);
+        addLiteralPrefix(literalPrefixOf(regex));
+    }
+
+    private void addRegexInternal(String regex) {
+        regexes.add(regex);
+        combined = compile();
+    }
+
+    private void addLiteralPrefix(String prefix) {
+        if (prefix == null || prefix.length() == 0) {
+            literalPrefixes = null;
+        } else if (literalPrefixes != null) {
+            literalPrefixes.add(prefix);
+        }
+    }
+
+    public boolean isEmpty() {
+        return names.isEmpty() && prefixes.isEmpty() && regexes.isEmpty();
+    }
+
+    public boolean matches(String tableName) {
+        if (names.contains(tableName)) return true;
+        if (prefixes.matchesPrefixOf(tableName)) return true;
+        return combined != null && combined.matcher(tableName).matches();
+    }
+
+    private Pattern compile() {
+        StringBuilder alternation = new StringBuilder();
+        for (String regex : regexes) {
+            if (alternation.length() > 0) alternation.append('|');
+            alternation.append("(?:").append(regex).append(')');
+        }
+        return Pattern.compile(alternation.toString());
+    }
+
+    /**
+     * @return the exact names added
+     */
+    public Set<String> getNames() {
+        return names;
+    }
+
+    /**
+     * @return literal prefixes such that every name matched by a pattern starts with one of them,
+     * or null if some pattern has no literal prefix
+     */
+    public Set<String> getLiteralPrefixes() {
+        return literalPrefixes;
+    }
+
+    /**
+     * @return the prefixes of the <code>PREFIX*</code> globs, i.e. prefixes every name starting with is matched
+     */
+    public Set<String> getWholePrefixes() {
+        return wholePrefixes;
+    }
+
+    private static int indexOfWildcard(String glob) {
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*' || c == '?') return i;
+        }
+        return -1;
+    }
+
+    static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*' || c == '?') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '*' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) regex.append(Pattern.quote(literal.toString()));
+        return regex.toString();
+    }
+
+    /**
+     * Conservatively extracts the characters every match of regex must start with.
+     */
+    static String literalPrefixOf(String regex) {
+        if (regex.indexOf('|') >= 0) return null;
+        int end = 0;
+        while (end < regex.length() && isPlainIdentifierChar(regex.charAt(end))) {
+            end++;
+        }
+        if (end < regex.length() && "*?{".indexOf(regex.charAt(end)) >= 0) {
+            // the last character is optional or repeated
+            end--;
+        }
+        return end <= 0 ? null : regex.substring(0, end);
+    }
+
+    private static boolean isPlainIdentifierChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '#';
+    }
+
+    private static class PrefixTrie {
+        private Node root = new Node();
+        private boolean empty = true;
+
+        void add(String prefix) {
+            Node node = root;
+            for (int i = 0; i < prefix.length(); i++) {
+                Node child = node.children.get(prefix.charAt(i));
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(prefix.charAt(i), child);
+                }
+                node = child;
+            }
+            node.terminal = true;
+            empty = false;
+        }
+
+        boolean isEmpty() {
+            return empty;
+        }
+
+        boolean matchesPrefixOf(String name) {
+            Node node = root;
+            for (int i = 0; ; i++) {
+                if (node.terminal) return true;
+                if (i == name.length()) return false;
+                node = node.children.get(name.charAt(i));
+                if (node == null) return false;
+            }
+        }
+
+        private static class Node {
+            private Map<Character, Node> children = new HashMap<Character, Node>(4);
+            private boolean terminal;
+        }
+    }
+}
@@ -26,6 +26,8 @@ package com.oracle2hsqldb;
  * @author Rhett Sutphin
  */
 public class View extends Table {
+    private static final long serialVersionUID = 1L;
+
     private String text;
 
     public View(String name, String text) {
@@ -37,6 +39,10 @@ public class View extends Table {
         return text;
     }
 
+    protected Table emptyCopy() {
+        return new View(name(), text);
+    }
+
     public static class Spec extends Table.Spec {
         private String text;
 
@@ -0,0 +1,224 @@
+/*
+ * Schemamule, a library for automating database schema tasks
+ * Copyright (C) 2006, Moses M. Hohman and Rhett Sutphin
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St., 5th Floor, Boston, MA  02110-1301
+
+ * To contact the authors, send email to:
+ * { mmhohman OR rsutphin } AT sourceforge DOT net
+ */
+
+package com.oracle2hsqldb.ant;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
+
+import com.oracle2hsqldb.DataCopier;
+import com.oracle2hsqldb.Schema;
+import com.oracle2hsqldb.Subset;
+
+/**
+ * Ant task for copying the rows of a schema's tables into a database whose tables already exist, usually
+ * because schemacopy created them.  Each table is streamed, so the copy runs in constant memory however
+ * big the tables are.  Afterwards an HSQLDB to database is shut down, as schemacopy does, so it is
+ * checkpointed and unlocked for the next process to open.
+ *
+ * <p>Example use:</p>
+ * <pre>
+ *   &lt;schemacopy xmlns="http://bioinformatics.northwestern.edu/schemamule"&gt;
+ *     &lt;to uri="jdbc:hsqldb:${basedir}/hsqldb/testingdb" username="sa" password=""/&gt;
+ *     &lt;from uri="${database}" username="copied_user" password="whatever"/&gt;
+ *   &lt;/schemacopy&gt;
+ *   &lt;datacopy xmlns="http://bioinformatics.northwestern.edu/schemamule" fetchsize="5000" batchsize="1000" threads="8" chunksize="268435456"&gt;
+ *     &lt;to uri="jdbc:hsqldb:${basedir}/hsqldb/testingdb" username="sa" password=""/&gt;
+ *     &lt;from uri="${database}" username="copied_user" password="whatever"/&gt;
+ *   &lt;/datacopy&gt;
+ * </pre>
+ *
+ * <p>Nested subset elements copy only some rows: those of the driving tables chosen by a where condition,
+ * a sample percentage or both, and the rows of other tables they reference, directly or not.</p>
+ * <pre>
+ *   &lt;datacopy xmlns="http://bioinformatics.northwestern.edu/schemamule" snapshot="true" seed="42"&gt;
+ *     &lt;to uri="jdbc:hsqldb:${basedir}/hsqldb/testingdb" username="sa" password=""/&gt;
+ *     &lt;from uri="${database}" username="copied_user" password="whatever"/&gt;
+ *     &lt;subset table="ORDERS" where="ORDERED &amp;gt; SYSDATE - 30" sample="5"/&gt;
+ *   &lt;/datacopy&gt;
+ * </pre>
+ */
+public class DataCopyTask extends SchemaTask {
+    private int fetchSize = DataCopier.DEFAULT_FETCH_SIZE;
+    private int batchSize = DataCopier.DEFAULT_BATCH_SIZE;
+    private int threads = 1;
+    private boolean parentsFirst = false;
+    private long chunkSize = 0;
+    private int retries = DataCopier.DEFAULT_RETRIES;
+    private boolean snapshot = false;
+    private long seed = Subset.DEFAULT_SEED;
+    private List<SubsetParams> subsets = new ArrayList<SubsetParams>();
+    private SchemaParams to;
+
+    public void execute() throws BuildException {
+        validate();
+        try {
+            if (parentsFirst || !subsets.isEmpty()) readForeignKeys();
+            Schema[] schemas = readSchemas();
+            for (int i = 0; i < schemas.length; i++) {
+                DataCopier copier = new DataCopier(getFrom(i).getDataSource(), to.getDataSource());
+                copier.setFetchSize(fetchSize);
+                copier.setBatchSize(batchSize);
+                copier.setThreads(threads);
+                copier.setParentsFirst(parentsFirst);
+                copier.setChunkSize(chunkSize);
+                copier.setRetries(retries);
+                copier.setSnapshot(snapshot);
+                copier.setDialect(getFrom(i).getDialect());
+                if (!subsets.isEmpty()) copier.setSubset(createSubset());
+                log("copied " + copier.copy(schemas[i]) + " rows of schema " + schemas[i].name());
+            }
+            cleanUp();
+        } catch (SQLException e) {
+            throw new BuildException(e);
+        }
+    }
+
+    /**
+     * Parents first and subsets find a table's parents from its foreign keys, so they need the from schemas
+     * read with them whatever their foreignkeys attribute says.
+     */
+    private void readForeignKeys() {
+        for (int i = 0; i < froms.size(); i++) {
+            if (getFrom(i).isForeignKeys()) continue;
+            log("reading the foreign keys of " + getFrom(i).getSchema() + ", which parentsfirst and subset need", Project.MSG_VERBOSE);
+            getFrom(i).setForeignKeys(true);
+        }
+    }
+
+    private void cleanUp() throws SQLException {
+        Connection connection = to.getConnection();
+        try {
+            StatementBatch statement = new StatementBatch(connection.createStatement(), 1);
+            try {
+                to.teardown(statement);
+            } finally {
+                statement.close();
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    private Subset createSubset() {
+        Subset subset = new Subset();
+        subset.seed(seed);
+        for (SubsetParams params : subsets) {
+            subset.addDrivingTable(params.getTable(), params.getWhere(), params.getSample());
+        }
+        return subset;
+    }
+
+    public void validate() throws BuildException {
+        super.validate();
+        if (to == null) throw new BuildException("to subelement is required");
+        if (fetchSize < 1) throw new BuildException("fetchsize argument must be >= 1");
+        if (batchSize < 1) throw new BuildException("batchsize argument must be >= 1");
+        if (threads < 1) throw new BuildException("threads argument must be >= 1");
+        if (chunkSize < 0) throw new BuildException("chunksize argument must be >= 0");
+        if (retries < 0) throw new BuildException("retries argument must be >= 0");
+        if (isStreaming()) throw new BuildException("datacopy does not support streaming");
+    }
+
+    // bean methods
+
+    public void addConfiguredTo(SchemaParams schema) {
+        preprocessAndValidate(schema);
+        if (to != null) throw new BuildException("only one to subelement is allowed");
+        if (schema.getIncludedTables().size() != 0) throw new BuildException("to subelement does not support table subelements");
+        to = schema;
+    }
+
+    public void addConfiguredSubset(SubsetParams subset) {
+        subset.validate();
+        subsets.add(subset);
+    }
+
+    /**
+     * How many rows the source driver fetches per round trip.
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * How many rows are inserted per batch, and so per commit.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Copy this many tables at once, biggest first, each over its own source and target connection.
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Hold each table back until the tables it references are copied, for targets with foreign keys, which
+     * schemacopy doesn't create.  Defaults to false.  The from schemas are then read with their foreign
+     * keys even if their foreignkeys attribute is false; subset elements do the same.
+     */
+    public void setParentsFirst(boolean parentsFirst) {
+        this.parentsFirst = parentsFirst;
+    }
+
+    /**
+     * Split tables bigger than this many bytes, according to their statistics, into chunks of about this
+     * size which are copied in parallel: by ROWID range from Oracle, by primary key range otherwise.  Off
+     * unless set.
+     */
+    public void setChunkSize(long chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * How many more times to try a table or chunk whose copy failed.  Not used for a snapshot copied in one
+     * transaction, when the from database has no flashback queries.
+     */
+    public void setRetries(int retries) {
+        this.retries = retries;
+    }
+
+    /**
+     * Read each schema's tables as they were when its copy started, so tables copied at different times
+     * still agree with each other.  Oracle reads them AS OF the SCN then, which needs enough undo to last
+     * the copy; other databases fall back to copying one table at a time in a serializable transaction.
+     */
+    public void setSnapshot(boolean snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * The seed of the subset samples, so the rows sampled to find the rows they reference are the rows
+     * copied.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+}
@@ -24,9 +24,13 @@ package com.oracle2hsqldb.ant;
 
 import org.apache.tools.ant.BuildException;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
 
+import com.oracle2hsqldb.HsqldbScriptWriter;
+import com.oracle2hsqldb.SchemaListener;
+
 /**
  * Ant task for copying a schema from one database to another.
  *
@@ -65,6 +69,7 @@ public class SchemaCopyTask extends SchemaTask {
     private static final int DEFAULT_BATCH_SIZE = 1;
 
     private int batchSize;
+    private boolean offline = false;
     private SchemaParams to;
 
     public SchemaCopyTask() {
@@ -73,6 +78,10 @@ public class SchemaCopyTask extends SchemaTask {
 
     public void execute() throws BuildException {
         validate();
+        if (offline) {
+            executeOffline();
+            return;
+        }
         try {
             Connection connection = to.getConnection();
             StatementBatch statement = null;
@@ -81,7 +90,7 @@ public class SchemaCopyTask extends SchemaTask {
             	connection.commit();
             	
                 statement = new StatementBatch(connection.createStatement(), batchSize);
-                to.writeSchemas(readSchemas(), statement);
+                copy(statement);
                 cleanUp(statement);
                 statement.flush();
             } finally {
@@ -94,10 +103,39 @@ public class SchemaCopyTask extends SchemaTask {
         }
     }
 
+    private void executeOffline() throws BuildException {
+        try {
+            HsqldbScriptWriter script = to.createScriptWriter();
+            try {
+                copy(new ScriptStatementBatch(script));
+                script.finish();
+            } finally {
+                script.close();
+            }
+        } catch (IOException e) {
+            throw new BuildException(e);
+        } catch (SQLException e) {
+            throw new BuildException(e);
+        }
+    }
+
+    private void copy(final StatementBatch statement) throws SQLException {
+        if (isStreaming()) {
+            streamSchemas(new SchemaListenerFactory() {
+                public SchemaListener startSchema(String schemaName) throws SQLException {
+                    return to.writeSchema(schemaName, statement);
+                }
+            });
+        } else {
+            to.writeSchemas(readSchemas(), statement);
+        }
+    }
+
     public void validate() throws BuildException {
         super.validate();
         if (to == null) throw new BuildException("to subelement is required");
         if (batchSize < 1) throw new BuildException("batchsize argument must be >= 1");
+        if (offline && to.getHsqldbFile() == null) throw new BuildException("offline requires the to uri to name an HSQLDB file database");
     }
 
     private void cleanUp(StatementBatch statement) throws SQLException {
@@ -117,4 +155,12 @@ public class SchemaCopyTask extends SchemaTask {
         this.batchSize = batchSize;
     }
 
+    /**
+     * Write the files of the HSQLDB database the to uri names directly, instead of connecting to it and
+     * executing each statement.  The database must not exist yet.
+     */
+    public void setOffline(boolean offline) {
+        this.offline = offline;
+    }
+
 }
\ No newline at end of file
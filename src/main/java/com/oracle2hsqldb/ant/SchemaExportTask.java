@@ -22,17 +22,29 @@
 
 package com.oracle2hsqldb.ant;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.sql.SQLException;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
 
 import com.oracle2hsqldb.Configuration;
+import com.oracle2hsqldb.ForeignKeyGraph;
 import com.oracle2hsqldb.Index;
 import com.oracle2hsqldb.Schema;
+import com.oracle2hsqldb.SchemaListener;
 import com.oracle2hsqldb.SchemaWriter;
 import com.oracle2hsqldb.Sequence;
 import com.oracle2hsqldb.Table;
@@ -42,37 +54,53 @@ import com.oracle2hsqldb.dialect.Dialect;
  * @author Rhett Sutphin
  */
 public class SchemaExportTask extends SchemaTask {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /** tables rendered by one task of a parallel export */
+    private static final int TABLES_PER_TASK = 64;
+
     private Dialect dialect;
     private Class dialectClass;
     private File file;
+    private int renderThreads = 1;
 
     public void validate() throws BuildException {
         super.validate();
         if (dialectClass == null) throw new BuildException("dialect is required");
+        if (renderThreads < 1) throw new BuildException("renderthreads argument must be >= 1");
+        if (renderThreads > 1 && isStreaming()) throw new BuildException("renderthreads can not be combined with streaming");
     }
 
     public void execute() throws BuildException {
         validate();
         initDialect();
         try {
-            Schema[] schemas = readSchemas();
-            SchemaWriter schemaWriter = new SchemaWriter(new Configuration(true, true, true, dialect));
-            FileWriter fileWriter = new FileWriter(file);
-            for (Schema schema : schemas) {
-                for (Table t : schema.tables()) {
-                    fileWriter.write(schemaWriter.write(t));
-                    fileWriter.write(";\n");
-                    for (Index i : t.indicies()) {
-                    	fileWriter.write(schemaWriter.write(i));
-                    	fileWriter.write(";\n");
+            final SchemaWriter schemaWriter = new SchemaWriter(new Configuration(true, true, true, dialect));
+            final Writer fileWriter = new BufferedWriter(new FileWriter(file), BUFFER_SIZE);
+            try {
+                if (isStreaming()) {
+                    streamSchemas(new SchemaListenerFactory() {
+                        public SchemaListener startSchema(String schemaName) {
+                            return export(schemaWriter, fileWriter);
+                        }
+                    });
+                } else {
+                    for (Schema schema : readSchemas()) {
+                        if (renderThreads > 1) {
+                            exportConcurrently(schemaWriter, schema.freeze(), fileWriter);
+                            continue;
+                        }
+                        SchemaListener exporter = export(schemaWriter, fileWriter);
+                        for (Table t : new ForeignKeyGraph(schema).topologicalOrder()) {
+                            exporter.tableRead(t);
+                        }
+                        for (Sequence seq : schema.sequences()) {
+                            exporter.sequenceRead(seq);
+                        }
                     }
                 }
-                for (Sequence seq : schema.sequences()) {
-                    fileWriter.write(schemaWriter.write(seq));
-                    fileWriter.write(";\n");
-                }                
+            } finally {
+                fileWriter.close();
             }
-            fileWriter.close();
         } catch (SQLException e) {
             throw new BuildException(e);
         } catch (IOException e) {
@@ -80,10 +108,101 @@ public class SchemaExportTask extends SchemaTask {
         }
     }
 
+    /**
+     * Renders each statement straight into the given writer.
+     */
+    private SchemaListener export(final SchemaWriter schemaWriter, final Writer out) {
+        return new SchemaListener() {
+            public void tableRead(Table t) {
+                try {
+                    exportTable(schemaWriter, t, out);
+                } catch (IOException e) {
+                    throw new BuildException(e);
+                }
+            }
+
+            public void sequenceRead(Sequence seq) {
+                try {
+                    schemaWriter.render(seq, out).append(";\n");
+                } catch (IOException e) {
+                    throw new BuildException(e);
+                }
+            }
+        };
+    }
+
+    private static void exportTable(SchemaWriter schemaWriter, Table t, Appendable out) throws IOException {
+        schemaWriter.render(t, out).append(";\n");
+        for (Index i : t.indicies()) {
+            // unique indices are part of the table definition
+            if (!i.isUnique()) {
+                schemaWriter.render(i, out).append(";\n");
+            }
+        }
+    }
+
+    /**
+     * Renders runs of tables on a pool of threads and writes them out in the same order as the sequential
+     * export, so the file is byte for byte the same.  Only a few runs are in flight at once, which keeps the
+     * rendered text held in memory bounded.  The schema has to be frozen, since its lazily computed state
+     * must not be written by the render threads.
+     */
+    private void exportConcurrently(final SchemaWriter schemaWriter, Schema schema, Writer out) throws IOException {
+        List<Table> tables = new ForeignKeyGraph(schema).topologicalOrder();
+        log("Rendering " + tables.size() + " tables with " + renderThreads + " threads", Project.MSG_VERBOSE);
+        ExecutorService executor = Executors.newFixedThreadPool(renderThreads);
+        try {
+            LinkedList<Future<String>> rendered = new LinkedList<Future<String>>();
+            for (int from = 0; from < tables.size(); from += TABLES_PER_TASK) {
+                final List<Table> run = tables.subList(from, Math.min(from + TABLES_PER_TASK, tables.size()));
+                rendered.add(executor.submit(new Callable<String>() {
+                    public String call() throws IOException {
+                        StringBuilder ddl = new StringBuilder();
+                        for (Table t : run) {
+                            exportTable(schemaWriter, t, ddl);
+                        }
+                        return ddl.toString();
+                    }
+                }));
+                if (rendered.size() >= 2 * renderThreads) {
+                    out.write(get(rendered.removeFirst()));
+                }
+            }
+            while (!rendered.isEmpty()) {
+                out.write(get(rendered.removeFirst()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        for (Sequence seq : schema.sequences()) {
+            schemaWriter.render(seq, out).append(";\n");
+        }
+    }
+
+    private static String get(Future<String> rendered) throws IOException {
+        try {
+            return rendered.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BuildException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new BuildException(e.getCause());
+        }
+    }
+
     public void setFile(File file) {
         this.file = file;
     }
 
+    /**
+     * Render the tables of each schema on this many threads.  The output is the same as with one.
+     */
+    public void setRenderThreads(int renderThreads) {
+        this.renderThreads = renderThreads;
+    }
+
     public void setDialectClass(String dialectClassName) {
         this.dialect = null;
         try {
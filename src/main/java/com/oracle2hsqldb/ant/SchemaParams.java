@@ -22,29 +22,40 @@
 
 package com.oracle2hsqldb.ant;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import javax.sql.DataSource;
+
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Project;
 import org.apache.tools.ant.Task;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
 
 import com.oracle2hsqldb.Configuration;
+import com.oracle2hsqldb.ExplicitTableFilter;
+import com.oracle2hsqldb.ForeignKeyGraph;
+import com.oracle2hsqldb.HsqldbScriptWriter;
 import com.oracle2hsqldb.Index;
 import com.oracle2hsqldb.Schema;
+import com.oracle2hsqldb.SchemaCache;
+import com.oracle2hsqldb.SchemaListener;
 import com.oracle2hsqldb.SchemaReader;
 import com.oracle2hsqldb.SchemaWriter;
 import com.oracle2hsqldb.Sequence;
 import com.oracle2hsqldb.Table;
 import com.oracle2hsqldb.TableFilter;
+import com.oracle2hsqldb.TableNameMatcher;
 import com.oracle2hsqldb.dialect.Dialect;
 import com.oracle2hsqldb.dialect.HSQLDialect;
 import com.oracle2hsqldb.dialect.Oracle9Dialect;
@@ -52,7 +63,7 @@ import com.oracle2hsqldb.dialect.Oracle9Dialect;
 /**
  * @author Moses Hohman
  */
-public class SchemaParams implements Validatable, TableFilter {
+public class SchemaParams implements Validatable, ExplicitTableFilter {
     private Project project;
     private Task parent;
     private URI uri;
@@ -64,9 +75,14 @@ public class SchemaParams implements Validatable, TableFilter {
     private boolean copyForeignKeys = false;
     private boolean copySequences = false;
     private boolean viewsAsTables = false;
+    private int readThreads = 1;
+    private long cachedTableThreshold = -1;
+    private boolean closure = false;
+    private int closureChildDepth = 0;
+    private File cacheDir;
     private transient String password;
-    private Set<String> includedTables = new HashSet<String>();
-    private Set<String> excludedTables = new HashSet<String>();
+    private TableNameMatcher includedTables = new TableNameMatcher();
+    private TableNameMatcher excludedTables = new TableNameMatcher();
 
     private static Map<String, Dialect> dialects = new HashMap<String, Dialect>();
 
@@ -87,45 +103,85 @@ public class SchemaParams implements Validatable, TableFilter {
         if (uri == null) throw new BuildException("uri argument is required");
         if (username == null) throw new BuildException("username argument is required");
         if (password == null) throw new BuildException("password argument is required");
+        if (readThreads < 1) throw new BuildException("readthreads argument must be >= 1");
+        if (closureChildDepth < 0) throw new BuildException("closurechilddepth argument must be >= 0");
     }
 
     public Schema readSchema() throws SQLException {
         log("reading schema (" + getSchema() + ") from database " + getUri() + " for user " + getUsername());
+        if (readThreads > 1) {
+            SchemaReader reader = createConcurrentReader();
+            reader.setCache(getCache());
+            return reader.read(getSchema(), getTableFilter(reader));
+        }
+        Connection connection = getConnection();
+        try {
+            SchemaReader reader = new SchemaReader(getConfiguration(), connection);
+            reader.setCache(getCache());
+            return reader.read(getSchema(), getTableFilter(reader));
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Reads the schema a chunk of tables at a time, passing each table to the listener as soon as it's complete.
+     */
+    public void readSchema(SchemaListener listener) throws SQLException {
+        log("streaming schema (" + getSchema() + ") from database " + getUri() + " for user " + getUsername());
+        if (readThreads > 1) {
+            SchemaReader reader = createConcurrentReader();
+            reader.read(getSchema(), getTableFilter(reader), listener);
+            return;
+        }
         Connection connection = getConnection();
         try {
             SchemaReader reader = new SchemaReader(getConfiguration(), connection);
-            return reader.read(getSchema(), this);
+            reader.read(getSchema(), getTableFilter(reader), listener);
         } finally {
             connection.close();
         }
     }
 
+    private SchemaReader createConcurrentReader() {
+        // each metadata phase gets its own connection
+        SchemaReader reader = new SchemaReader(getConfiguration(), getDataSource());
+        reader.setThreads(readThreads);
+        return reader;
+    }
+
+    /**
+     * @return a cache file per database, user and schema in the cache directory, if there is one
+     */
+    SchemaCache getCache() {
+        if (cacheDir == null) return null;
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) throw new BuildException("could not create cache directory " + cacheDir);
+        String key = getUri() + "_" + getUsername() + "_" + getSchema();
+        return new SchemaCache(new File(cacheDir, key.replaceAll("[^A-Za-z0-9._-]", "_") + ".schema"));
+    }
+
+    private TableFilter getTableFilter(SchemaReader reader) throws SQLException {
+        if (closure && !includedTables.isEmpty()) {
+            return reader.closeOverForeignKeys(getSchema(), this, closureChildDepth);
+        }
+        return this;
+    }
+
     public void writeSchemas(Schema[] schemas, StatementBatch statement) throws SQLException {
-        SchemaWriter writer = new SchemaWriter(getConfiguration());
-        writer.setViewsAsTables(viewsAsTables);
         for (int i = 0; i < schemas.length; i++) {
-            log("writing schema " + schemas[i].name());
-            if (schemas[i].name() != null) {
-            	statement.executeUpdate(writer.write(schemas[i]));
-            	statement.executeUpdate(writer.switchToSchema(schemas[i]));
+            SchemaListener schemaWriter = writeSchema(schemas[i].name(), statement);
+            ForeignKeyGraph graph = new ForeignKeyGraph(schemas[i]);
+            for (List<Table> cycle : graph.getCycles()) {
+                log("foreign key cycle between " + cycle, Project.MSG_VERBOSE);
             }
-            for (Iterator<Table> tables = schemas[i].tables().iterator(); tables.hasNext();) {
-                Table table = tables.next();
-                log("writing table: " + table.name() + "\n" + writer.write(table), Project.MSG_VERBOSE);
-                statement.executeUpdate(writer.write(table));
-                for (Index index : table.indicies()) {
-                	if (!index.isUnique()) { // only do non-unique indices, since the unique ones are created during table creation
-                    	log("writing index: " + index.name() + "\n" + writer.write(index), Project.MSG_VERBOSE);
-                		statement.executeUpdate(writer.write(index));
-                	}
-				}
+            // parents before children
+            for (Iterator<Table> tables = graph.topologicalOrder().iterator(); tables.hasNext();) {
+                schemaWriter.tableRead(tables.next());
             }
             if (copySequences) {
                 log("WRITING SEQUENCES", Project.MSG_VERBOSE);
                 for (Iterator<Sequence> sequences = schemas[i].sequences().iterator(); sequences.hasNext();) {
-                    Sequence sequence = sequences.next();
-                    log("writing sequence: " + sequence.name() + "\n" + writer.write(sequence), Project.MSG_VERBOSE);
-                    statement.executeUpdate(writer.write(sequence));
+                    schemaWriter.sequenceRead(sequences.next());
                 }
             } else {
                 log("NOT WRITING SEQUENCES", Project.MSG_VERBOSE);
@@ -133,6 +189,43 @@ public class SchemaParams implements Validatable, TableFilter {
         }
     }
 
+    /**
+     * Creates the named schema and returns a listener which writes the tables and sequences it is passed
+     * into it.
+     */
+    public SchemaListener writeSchema(String schemaName, final StatementBatch statement) throws SQLException {
+        final SchemaWriter writer = new SchemaWriter(getConfiguration());
+        writer.setViewsAsTables(viewsAsTables);
+        writer.setCachedTableThreshold(cachedTableThreshold);
+        log("writing schema " + schemaName);
+        if (schemaName != null) {
+            Schema schema = new Schema(schemaName);
+            statement.executeUpdate(writer.write(schema));
+            statement.executeUpdate(writer.switchToSchema(schema));
+        }
+        // each statement is rendered once, the verbose log reuses it
+        return new SchemaListener() {
+            public void tableRead(Table table) throws SQLException {
+                execute("table", table.name(), writer.write(table));
+                for (Index index : table.indicies()) {
+                    if (!index.isUnique()) { // only do non-unique indices, since the unique ones are created during table creation
+                        execute("index", index.name(), writer.write(index));
+                    }
+                }
+            }
+
+            public void sequenceRead(Sequence sequence) throws SQLException {
+                if (!copySequences) return;
+                execute("sequence", sequence.name(), writer.write(sequence));
+            }
+
+            private void execute(String kind, String name, String sql) throws SQLException {
+                log("writing " + kind + ": " + name + "\n" + sql, Project.MSG_VERBOSE);
+                statement.executeUpdate(sql);
+            }
+        };
+    }
+
     public void teardown(StatementBatch statement) throws SQLException {
         if (getDialect().getShutdownSql() != null) {
             statement.executeUpdate(getDialect().getShutdownSql());
@@ -143,6 +236,37 @@ public class SchemaParams implements Validatable, TableFilter {
         return DriverManager.getConnection(getUri().toString(), username, password);
     }
 
+    /**
+     * @return a data source opening a new connection to the database each time it is asked for one
+     */
+    public DataSource getDataSource() {
+        return new DriverManagerDataSource(getUri().toString(), username, password);
+    }
+
+    /**
+     * Starts writing the HSQLDB file database the uri names directly, without connecting to it.
+     */
+    public HsqldbScriptWriter createScriptWriter() throws IOException {
+        File database = getHsqldbFile();
+        if (database == null) throw new BuildException(getUri() + " is not an HSQLDB file database");
+        return new HsqldbScriptWriter(database, username, password);
+    }
+
+    /**
+     * @return the path of the HSQLDB file database the uri names, without the files' extensions, or null
+     *      if it names some other kind of database
+     */
+    File getHsqldbFile() {
+        String path = getUri().toString();
+        if (!path.startsWith("jdbc:hsqldb:")) return null;
+        path = path.substring("jdbc:hsqldb:".length());
+        if (path.indexOf(';') >= 0) path = path.substring(0, path.indexOf(';'));
+        if (path.startsWith("file:")) return new File(path.substring("file:".length()));
+        // memory, resource and server databases, and the old "." shorthand for a memory database
+        if (path.matches("(mem|res|hsqls?|https?):.*") || path.equals(".")) return null;
+        return new File(path);
+    }
+
     public boolean isAllTables() {
         return includedTables.isEmpty() && excludedTables.isEmpty();
     }
@@ -155,10 +279,10 @@ public class SchemaParams implements Validatable, TableFilter {
         if (isAllTables()) {
             // all
             return true;
-        } else if (includedTables.contains(tableName)) {
+        } else if (includedTables.matches(tableName)) {
             // explicitly included
             return true;
-        } else if (excludedTables.contains(tableName)) {
+        } else if (excludedTables.matches(tableName)) {
             // explicitly excluded
             return false;
         } else {
@@ -220,10 +344,13 @@ public class SchemaParams implements Validatable, TableFilter {
 
     public void addConfiguredTable(TableParams table) {
         table.validate();
-        if (table.isExclude()) {
-            excludedTables.add(table.getName());
+        TableNameMatcher tables = table.isExclude() ? excludedTables : includedTables;
+        if (table.getName() != null) {
+            tables.addName(table.getName());
+        } else if (table.getPattern() != null) {
+            tables.addGlob(table.getPattern());
         } else {
-            includedTables.add(table.getName());
+            tables.addRegex(table.getRegex());
         }
     }
 
@@ -260,6 +387,10 @@ public class SchemaParams implements Validatable, TableFilter {
         this.copyPrimaryKeys = copyPrimaryKeys;
     }
 
+    public boolean isForeignKeys() {
+        return copyForeignKeys;
+    }
+
     public void setForeignKeys(boolean copyForeignKeys) {
         this.copyForeignKeys = copyForeignKeys;
     }
@@ -268,6 +399,40 @@ public class SchemaParams implements Validatable, TableFilter {
         this.viewsAsTables = viewsAsTables;
     }
 
+    /**
+     * Tables bigger than this many bytes (the source's row count times its average row length) are created
+     * as CACHED tables on an HSQLDB target, so their rows stay on disk; smaller ones and tables without
+     * statistics stay MEMORY tables.  Off unless set.
+     */
+    public void setCachedTableThreshold(long cachedTableThreshold) {
+        this.cachedTableThreshold = cachedTableThreshold;
+    }
+
+    public void setReadThreads(int readThreads) {
+        this.readThreads = readThreads;
+    }
+
+    /**
+     * Also read every table the included tables reference through foreign keys.
+     */
+    public void setClosure(boolean closure) {
+        this.closure = closure;
+    }
+
+    /**
+     * With closure, also read the tables referencing the included ones, up to this many foreign keys away.
+     */
+    public void setClosureChildDepth(int closureChildDepth) {
+        this.closureChildDepth = closureChildDepth;
+    }
+
+    /**
+     * Keep the schemas read in this directory, and afterwards only re-read the tables whose DDL changed.
+     */
+    public void setCacheDir(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
     public void setCopySequences(boolean copySequences) {
         this.copySequences = copySequences;
     }
@@ -281,10 +446,18 @@ public class SchemaParams implements Validatable, TableFilter {
 	}
 
 	public Set<String> getIncludedTables() {
-        return includedTables;
+        return includedTables.getNames();
     }
 
     public Set<String> getExcludedTables() {
-        return excludedTables;
+        return excludedTables.getNames();
+    }
+
+    public Set<String> getIncludedPrefixes() {
+        return includedTables.getLiteralPrefixes();
+    }
+
+    public Set<String> getExcludedPrefixes() {
+        return excludedTables.getWholePrefixes();
     }
 }
\ No newline at end of file
@@ -27,6 +27,7 @@ import org.apache.tools.ant.Task;
 import org.apache.tools.ant.BuildException;
 
 import com.oracle2hsqldb.Schema;
+import com.oracle2hsqldb.SchemaListener;
 
 import java.sql.SQLException;
 import java.util.List;
@@ -37,6 +38,7 @@ import java.util.LinkedList;
  */
 public abstract class SchemaTask extends Task implements Validatable {
     protected List froms;
+    private boolean streaming = false;
 
     public SchemaTask() {
         froms = new LinkedList();
@@ -68,7 +70,36 @@ public abstract class SchemaTask extends Task implements Validatable {
         return schemas;
     }
 
-    private SchemaParams getFrom(int index) {
+    /**
+     * Reads each from schema in turn, passing its tables to the listener the factory creates for it as
+     * soon as they are read.
+     */
+    protected void streamSchemas(SchemaListenerFactory factory) throws SQLException {
+        for (int i = 0; i < froms.size(); i++) {
+            log(getFrom(i).getSchema()
+                    + ": incl" + getFrom(i).getIncludedTables()
+                    + " excl" + getFrom(i).getExcludedTables(),
+                    Project.MSG_VERBOSE);
+            getFrom(i).readSchema(factory.startSchema(getFrom(i).getSchema()));
+        }
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Write each table as soon as it has been read, instead of reading every schema first.
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    protected SchemaParams getFrom(int index) {
         return (SchemaParams) froms.get(index);
     }
+
+    protected interface SchemaListenerFactory {
+        SchemaListener startSchema(String schemaName) throws SQLException;
+    }
 }
@@ -0,0 +1,53 @@
+/*
+ * Schemamule, a library for automating database schema tasks
+ * Copyright (C) 2006, Moses M. Hohman and Rhett Sutphin
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St., 5th Floor, Boston, MA  02110-1301
+
+ * To contact the authors, send email to:
+ * { mmhohman OR rsutphin } AT sourceforge DOT net
+ */
+package com.oracle2hsqldb.ant;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+import com.oracle2hsqldb.HsqldbScriptWriter;
+
+/**
+ * Adds the statements to an HSQLDB script instead of executing them.
+ */
+public class ScriptStatementBatch extends StatementBatch {
+    private HsqldbScriptWriter script;
+
+    public ScriptStatementBatch(HsqldbScriptWriter script) {
+        super(null, 1);
+        this.script = script;
+    }
+
+    public void executeUpdate(String sql) throws SQLException {
+        try {
+            script.write(sql);
+        } catch (IOException e) {
+            throw new SQLException("could not write to script: " + e.getMessage(), e);
+        }
+    }
+
+    public void flush() {
+    }
+
+    public void close() {
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Schemamule, a library for automating database schema tasks
+ * Copyright (C) 2006, Moses M. Hohman and Rhett Sutphin
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St., 5th Floor, Boston, MA  02110-1301
+
+ * To contact the authors, send email to:
+ * { mmhohman OR rsutphin } AT sourceforge DOT net
+ */
+
+package com.oracle2hsqldb.ant;
+
+import org.apache.tools.ant.BuildException;
+
+/**
+ * A driving table of a datacopy subset, with the condition or sample choosing its rows.
+ */
+public class SubsetParams implements Validatable {
+    private String table;
+    private String where;
+    private Double sample;
+
+    public void validate() throws BuildException {
+        if (table == null) throw new BuildException("argument table is required");
+        if (where == null && sample == null) throw new BuildException("one of the where and sample arguments is required");
+        if (sample != null && !(sample > 0 && sample < 100)) throw new BuildException("sample argument must be > 0 and < 100");
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public void setTable(String table) {
+        this.table = table;
+    }
+
+    /**
+     * An SQL condition on the table's columns.
+     */
+    public String getWhere() {
+        return where;
+    }
+
+    public void setWhere(String where) {
+        this.where = where;
+    }
+
+    /**
+     * The percentage of the table's rows to sample.  Needs Oracle 10g or later.
+     */
+    public Double getSample() {
+        return sample;
+    }
+
+    public void setSample(Double sample) {
+        this.sample = sample;
+    }
+}
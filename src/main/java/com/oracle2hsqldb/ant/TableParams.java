@@ -22,6 +22,9 @@
 
 package com.oracle2hsqldb.ant;
 
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
 import org.apache.tools.ant.BuildException;
 
 /**
@@ -29,10 +32,21 @@ import org.apache.tools.ant.BuildException;
  */
 public class TableParams implements Validatable {
     private String name;
+    private String pattern;
+    private String regex;
     private boolean exclude = false;
 
     public void validate() throws BuildException {
-        if (name==null) throw new BuildException("argument name is required");
+        int given = (name == null ? 0 : 1) + (pattern == null ? 0 : 1) + (regex == null ? 0 : 1);
+        if (given == 0) throw new BuildException("argument name is required");
+        if (given > 1) throw new BuildException("only one of the name, pattern and regex arguments is allowed");
+        if (regex != null) {
+            try {
+                Pattern.compile(regex);
+            } catch (PatternSyntaxException e) {
+                throw new BuildException("invalid regex " + regex, e);
+            }
+        }
     }
 
     public String getName() {
@@ -43,6 +57,25 @@ public class TableParams implements Validatable {
         this.name = name;
     }
 
+    /**
+     * A glob, where <code>*</code> matches any run of characters and <code>?</code> any single one.
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    public void setPattern(String pattern) {
+        this.pattern = pattern;
+    }
+
+    public String getRegex() {
+        return regex;
+    }
+
+    public void setRegex(String regex) {
+        this.regex = regex;
+    }
+
     public boolean isExclude() {
         return exclude;
     }
@@ -24,6 +24,7 @@ package com.oracle2hsqldb.dialect;
 
 
 import java.sql.SQLException;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
@@ -34,8 +35,10 @@ import org.springframework.util.MultiValueMap;
 import com.oracle2hsqldb.Column;
 import com.oracle2hsqldb.DefaultValue;
 import com.oracle2hsqldb.PrimaryKey;
+import com.oracle2hsqldb.Reference;
 import com.oracle2hsqldb.Sequence;
 import com.oracle2hsqldb.Table;
+import com.oracle2hsqldb.TableChunk;
 import com.oracle2hsqldb.TableFilter;
 import com.oracle2hsqldb.Index;
 
@@ -53,6 +56,11 @@ public interface Dialect {
     boolean supportsViews();
 
     boolean supportsSequences();
+
+    /**
+     * @return whether tables can be created as CACHED tables, which keep their rows on disk instead of in memory
+     */
+    boolean supportsCachedTables();
     
     String getIdentityColumnString();
 
@@ -62,9 +70,46 @@ public interface Dialect {
 
     List<Sequence> getSequences(DataSource dataSource, String schemaName) throws SQLException;
 
+    /**
+     * @return when the DDL of each table and view accepted by the filter last changed, or null if the
+     *      database can't tell
+     */
+    Map<String, Date> getLastDdlTimes(DataSource dataSource, String schemaName, TableFilter filter) throws SQLException;
+
     Map<String, PrimaryKey.Spec> getPrimaryKeys(DataSource dataSource, String schemaName, List<Table.Spec> tables);
 
-    List<Index.Spec> getIndicies(DataSource dataSource, String schemaName, List<Table.Spec> tables);
+    List<Reference.Spec> getForeignKeys(DataSource dataSource, String schemaName, List<Table.Spec> tables);
+
+    /**
+     * @param foreignKeys the result of {@link #getForeignKeys}; an index is added for each foreign key
+     */
+    List<Index.Spec> getIndicies(DataSource dataSource, String schemaName, List<Table.Spec> tables, List<Reference.Spec> foreignKeys);
+
+    /**
+     * Splits a table into about the given number of chunks of similar size, which together select each
+     * of its rows exactly once.
+     *
+     * @return the chunks, or the whole table as a single chunk if the dialect can't split it
+     */
+    List<TableChunk> getChunks(DataSource dataSource, String schemaName, Table table, int chunks) throws SQLException;
+
+    /**
+     * Marks the database's current state, so that queries started later, on any connection, can read
+     * the tables as they are now.
+     *
+     * @return a clause to follow a table name in a query's FROM so it reads the table as it is now, or
+     *      null if the database has no such queries
+     */
+    String getSnapshotClause(DataSource dataSource) throws SQLException;
+
+    /**
+     * @param percent the percentage of the table's rows to read
+     * @param seed picks which sample is read, the same seed reading the same rows as long as the table
+     *      doesn't change
+     * @return a clause to follow a table name in a query's FROM so it reads a sample of the table's rows,
+     *      or null if the database can't sample
+     */
+    String getSampleClause(double percent, long seed);
 
     int getType(String dataTypeName);
 
@@ -28,13 +28,18 @@ import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.sql.DataSource;
 
+import org.apache.log4j.Logger;
 import org.hibernate.MappingException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
@@ -42,10 +47,13 @@ import org.springframework.util.MultiValueMap;
 import com.oracle2hsqldb.Column;
 import com.oracle2hsqldb.DefaultValue;
 import com.oracle2hsqldb.Index;
+import com.oracle2hsqldb.NamePool;
 import com.oracle2hsqldb.PrimaryKey;
+import com.oracle2hsqldb.Reference;
 import com.oracle2hsqldb.SchemaException;
 import com.oracle2hsqldb.Sequence;
 import com.oracle2hsqldb.Table;
+import com.oracle2hsqldb.TableChunk;
 import com.oracle2hsqldb.TableFilter;
 import com.oracle2hsqldb.spring.MetaDataJdbcTemplate;
 
@@ -53,6 +61,8 @@ import com.oracle2hsqldb.spring.MetaDataJdbcTemplate;
  * @author Moses Hohman
  */
 public class GenericDialect implements Dialect {
+    protected final Logger log = Logger.getLogger(getClass());
+
 	private static class HibernateGenericDialect extends org.hibernate.dialect.Dialect {
 		@Override
 		public String getIdentityColumnString() {
@@ -81,6 +91,8 @@ public class GenericDialect implements Dialect {
     }
 
     private boolean schemaInfoAccessible = true;
+    private boolean bulkMetaData = true;
+    private NamePool names = new NamePool();
     
     @Override
 	public boolean isSchemaInfoAccessible() {
@@ -92,6 +104,37 @@ public class GenericDialect implements Dialect {
 		this.schemaInfoAccessible = schemaInfoAccessible;
 	}
 
+	/**
+	 * If true (the default), column, primary key and index metadata is read with one schema-wide
+	 * DatabaseMetaData call per kind instead of one call per table.
+	 */
+	public boolean isBulkMetaData() {
+		return bulkMetaData;
+	}
+
+	public void setBulkMetaData(boolean bulkMetaData) {
+		this.bulkMetaData = bulkMetaData;
+	}
+
+	/**
+	 * The pool the names read from the dictionary are interned in; dialects reading several schemas
+	 * with mostly the same column names can share one.
+	 */
+	public NamePool getNamePool() {
+		return names;
+	}
+
+	public void setNamePool(NamePool names) {
+		this.names = names;
+	}
+
+	/**
+	 * Reads a table, column, key or index name from the dictionary.
+	 */
+	protected String getName(ResultSet rs, String columnLabel) throws SQLException {
+		return names.intern(rs.getString(columnLabel));
+	}
+
 	public int getType(String dataTypeName) {
         if (!TYPES_BY_NAME.containsKey(dataTypeName)) throw new IllegalArgumentException("No registered type for name " + dataTypeName);
         return ((Integer) TYPES_BY_NAME.get(dataTypeName)).intValue();
@@ -121,7 +164,7 @@ public class GenericDialect implements Dialect {
         };
         template.query(new RowCallbackHandler() {
             public void processRow(ResultSet tables) throws SQLException {
-            	Table.Spec spec = new Table.Spec(tables.getString("TABLE_NAME"), tables.getString("TABLE_TYPE"));
+            	Table.Spec spec = new Table.Spec(getName(tables, "TABLE_NAME"), tables.getString("TABLE_TYPE"));
             	if (filter == null || (filter != null && filter.accept(spec.getTable()))) {
                     result.add(spec);
             	}
@@ -133,98 +176,229 @@ public class GenericDialect implements Dialect {
     @Override
     public MultiValueMap<String, Column.Spec> getColumns(final DataSource dataSource, final String schemaName, List<Table.Spec> tables) throws SQLException {
         final MultiValueMap<String, Column.Spec> result = new LinkedMultiValueMap<String, Column.Spec>();
-        for (final Table.Spec table : tables) {
-	        MetaDataJdbcTemplate template = new MetaDataJdbcTemplate(dataSource) {
-	            protected ResultSet getResults(DatabaseMetaData metaData) throws SQLException {
-	                return metaData.getColumns(null, schemaName, table.getTableName(), null);
-	            }
-	        };
-	        template.query(new RowCallbackHandler() {
-	            public void processRow(ResultSet columns) throws SQLException {
-	                //retrieve values ahead of time, otherwise you get a stream closed error from Oracle
-	                String columnName = columns.getString("COLUMN_NAME");
-	                int dataType = columns.getInt("DATA_TYPE");
-	                String tableName = columns.getString("TABLE_NAME");
-	                int columnSize = columns.getInt("COLUMN_SIZE");
-	                int decimalDigits = columns.getInt("DECIMAL_DIGITS");
-	                boolean isNullable = columns.getBoolean("NULLABLE");
-	                String columnDef = columns.getString("COLUMN_DEF");
-	                result.add(tableName, new Column.Spec(tableName, new Column(columnName, dataType, columnSize, decimalDigits, isNullable, parseDefaultValue(columnDef, dataType))));
-	            }
-	        });
-        }
+        queryTableMetaData(dataSource, tables, "TABLE_NAME", new TableMetaDataCall() {
+            public ResultSet getResults(DatabaseMetaData metaData, String tableName) throws SQLException {
+                return metaData.getColumns(null, schemaName, tableName, null);
+            }
+        }, new RowCallbackHandler() {
+            public void processRow(ResultSet columns) throws SQLException {
+                //retrieve values ahead of time, otherwise you get a stream closed error from Oracle
+                String columnName = getName(columns, "COLUMN_NAME");
+                int dataType = columns.getInt("DATA_TYPE");
+                String tableName = getName(columns, "TABLE_NAME");
+                int columnSize = columns.getInt("COLUMN_SIZE");
+                int decimalDigits = columns.getInt("DECIMAL_DIGITS");
+                boolean isNullable = columns.getBoolean("NULLABLE");
+                String columnDef = columns.getString("COLUMN_DEF");
+                result.add(tableName, new Column.Spec(tableName, new Column(columnName, dataType, columnSize, decimalDigits, isNullable, parseDefaultValue(columnDef, dataType))));
+            }
+        });
         return result;
     }
 
     @Override
     public Map<String, PrimaryKey.Spec> getPrimaryKeys(DataSource dataSource, final String schemaName, List<Table.Spec> tables) {
         final Map<String, PrimaryKey.Spec> byTableName = new HashMap<String, PrimaryKey.Spec>();
-        for (final Table.Spec table : tables) {
-	        MetaDataJdbcTemplate template = new MetaDataJdbcTemplate(dataSource) {
-	            protected ResultSet getResults(DatabaseMetaData metaData) throws SQLException {
-	                return metaData.getPrimaryKeys(null, schemaName, table.getTableName());
-	            }
-	        };
-	        template.query(new RowCallbackHandler() {
-	            public void processRow(ResultSet primaryKeys) throws SQLException {
-	                String tableName = primaryKeys.getString("TABLE_NAME");
-	                if (!byTableName.containsKey(tableName)) {
-	                    byTableName.put(tableName, new PrimaryKey.Spec(tableName, primaryKeys.getString("PK_NAME")));
-	                }
-	                byTableName.get(tableName).addColumnName(primaryKeys.getString("COLUMN_NAME"));
-	            }
-	        });
-		}
+        queryTableMetaData(dataSource, tables, "TABLE_NAME", new TableMetaDataCall() {
+            public ResultSet getResults(DatabaseMetaData metaData, String tableName) throws SQLException {
+                return metaData.getPrimaryKeys(null, schemaName, tableName);
+            }
+        }, new RowCallbackHandler() {
+            public void processRow(ResultSet primaryKeys) throws SQLException {
+                String tableName = getName(primaryKeys, "TABLE_NAME");
+                if (!byTableName.containsKey(tableName)) {
+                    byTableName.put(tableName, new PrimaryKey.Spec(tableName, getName(primaryKeys, "PK_NAME")));
+                }
+                // rows come back ordered by COLUMN_NAME, KEY_SEQ carries the key order
+                byTableName.get(tableName).addColumnName(getName(primaryKeys, "COLUMN_NAME"), primaryKeys.getInt("KEY_SEQ"));
+            }
+        });
         return byTableName;
     }
 
     @Override
-    public List<Index.Spec> getIndicies(DataSource dataSource, final String schemaName, List<Table.Spec> tables) {
+    public List<Reference.Spec> getForeignKeys(DataSource dataSource, final String schemaName, List<Table.Spec> tables) {
+        final List<Reference.Spec> result = new ArrayList<Reference.Spec>();
+        queryTableMetaData(dataSource, tables, "FKTABLE_NAME", new TableMetaDataCall() {
+            public ResultSet getResults(DatabaseMetaData metaData, String tableName) throws SQLException {
+                return metaData.getImportedKeys(null, schemaName, tableName);
+            }
+        }, new RowCallbackHandler() {
+            public void processRow(ResultSet foreignKeys) throws SQLException {
+                result.add(new Reference.Spec(getName(foreignKeys, "FKTABLE_NAME"), getName(foreignKeys, "FKCOLUMN_NAME"),
+                        getName(foreignKeys, "FK_NAME"), getName(foreignKeys, "PKTABLE_NAME"), getName(foreignKeys, "PKCOLUMN_NAME")));
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public List<Index.Spec> getIndicies(DataSource dataSource, final String schemaName, List<Table.Spec> tables, List<Reference.Spec> foreignKeys) {
         final List<Index.Spec> result = new ArrayList<Index.Spec>();
-        
-        final RowCallbackHandler INDEX_CALLBACK_HANDLER = new RowCallbackHandler() {
+
+        queryTableMetaData(dataSource, tables, "TABLE_NAME", new TableMetaDataCall() {
+            public ResultSet getResults(DatabaseMetaData metaData, String tableName) throws SQLException {
+                return metaData.getIndexInfo(null, schemaName, tableName, false, true);
+            }
+        }, new RowCallbackHandler() {
             public void processRow(ResultSet uniqueIndexes) throws SQLException {
                 boolean isNonUnique = uniqueIndexes.getBoolean("NON_UNIQUE");
-                String columnName = uniqueIndexes.getString("COLUMN_NAME");
-                String constraintName = uniqueIndexes.getString("INDEX_NAME");
-                String tableName = uniqueIndexes.getString("TABLE_NAME");
+                String columnName = getName(uniqueIndexes, "COLUMN_NAME");
+                String constraintName = getName(uniqueIndexes, "INDEX_NAME");
+                String tableName = getName(uniqueIndexes, "TABLE_NAME");
                 result.add(new Index.Spec(tableName, columnName, constraintName, !isNonUnique));
             }
-        };
+        });
 
-        final RowCallbackHandler FK_CALLBACK_HANDLER = new RowCallbackHandler() {
-            public void processRow(ResultSet foreignKeys) throws SQLException {
-                String columnName = foreignKeys.getString("FKCOLUMN_NAME");
-                String constraintName = foreignKeys.getString("FK_NAME");
-                String tableName = foreignKeys.getString("FKTABLE_NAME");
-                result.add(new Index.Spec(tableName, columnName, constraintName, false));
-            }
-        };
+        addForeignKeyIndicies(result, foreignKeys);
+        return result;
+    }
 
+    /**
+     * We're not going to create the foreign key constraints, but will create an index so that joins are faster.
+     */
+    protected void addForeignKeyIndicies(List<Index.Spec> indicies, List<Reference.Spec> foreignKeys) {
+        for (Reference.Spec foreignKey : foreignKeys) {
+            indicies.add(new Index.Spec(foreignKey.getTableName(), foreignKey.getColumnName(), foreignKey.getName(), false));
+        }
+    }
+
+    /**
+     * Reads one kind of per-table metadata for all of the given tables.  In bulk mode this is a single
+     * DatabaseMetaData call with a null table name pattern, whose rows are filtered down to the requested
+     * tables.  If the driver rejects the wildcard we fall back to one call per table.
+     *
+     * @param tableNameColumn the result set column holding the name of the table a row belongs to
+     */
+    protected void queryTableMetaData(DataSource dataSource, List<Table.Spec> tables, String tableNameColumn,
+            final TableMetaDataCall call, RowCallbackHandler rowHandler) {
+        if (bulkMetaData) {
+            BulkRowFilter bulkHandler = new BulkRowFilter(tables, tableNameColumn, rowHandler);
+            try {
+                new MetaDataJdbcTemplate(dataSource) {
+                    protected ResultSet getResults(DatabaseMetaData metaData) throws SQLException {
+                        return call.getResults(metaData, null);
+                    }
+                }.query(bulkHandler);
+                return;
+            } catch (MetaDataJdbcTemplate.MetaDataAccessException e) {
+                // once rows have been handed out, falling back would read them twice
+                if (bulkHandler.hasReadRows()) throw e;
+                log.info("Schema-wide metadata query failed, falling back to one query per table: " + e.getMessage());
+            }
+        }
         for (final Table.Spec table : tables) {
-        	// first get the indexes
-	        MetaDataJdbcTemplate template = new MetaDataJdbcTemplate(dataSource) {
-	            protected ResultSet getResults(DatabaseMetaData metaData) throws SQLException {
-	                return metaData.getIndexInfo(null, schemaName, table.getTableName(), false, true);
-	            }
-	        };
-	        template.query(INDEX_CALLBACK_HANDLER);
-	        
-        	// then also get the foreign keys..we're not going to create these constraints, but will create an index so that joins are faster
-	        MetaDataJdbcTemplate fkTemplate = new MetaDataJdbcTemplate(dataSource) {
-	            protected ResultSet getResults(DatabaseMetaData metaData) throws SQLException {
-	                return metaData.getImportedKeys(null, schemaName, table.getTableName());
-	            }
-	        };
-	        fkTemplate.query(FK_CALLBACK_HANDLER);
-	    }
-        return result;
+            new MetaDataJdbcTemplate(dataSource) {
+                protected ResultSet getResults(DatabaseMetaData metaData) throws SQLException {
+                    return call.getResults(metaData, table.getTableName());
+                }
+            }.query(rowHandler);
+        }
+    }
+
+    /**
+     * A DatabaseMetaData call that can be made for a single table or, with a null table name, for the whole schema.
+     */
+    protected interface TableMetaDataCall {
+        ResultSet getResults(DatabaseMetaData metaData, String tableName) throws SQLException;
+    }
+
+    private static class BulkRowFilter implements RowCallbackHandler {
+        private final Set<String> tableNames = new HashSet<String>();
+        private final String tableNameColumn;
+        private final RowCallbackHandler delegate;
+        private boolean readRows = false;
+
+        public BulkRowFilter(List<Table.Spec> tables, String tableNameColumn, RowCallbackHandler delegate) {
+            for (Table.Spec table : tables) {
+                tableNames.add(table.getTableName());
+            }
+            this.tableNameColumn = tableNameColumn;
+            this.delegate = delegate;
+        }
+
+        public void processRow(ResultSet rs) throws SQLException {
+            readRows = true;
+            if (tableNames.contains(rs.getString(tableNameColumn))) {
+                delegate.processRow(rs);
+            }
+        }
+
+        public boolean hasReadRows() {
+            return readRows;
+        }
     }
 
     public List<Sequence> getSequences(DataSource dataSource, String schemaName) throws SQLException {
     	return Collections.emptyList();
     }
 
+    public Map<String, Date> getLastDdlTimes(DataSource dataSource, String schemaName, TableFilter filter) throws SQLException {
+        return null;
+    }
+
+    /**
+     * Splits a table with a single column integral primary key into ranges of key values, as if the keys
+     * were spread evenly between the smallest and the biggest.
+     */
+    public List<TableChunk> getChunks(DataSource dataSource, String schemaName, Table table, int chunks) throws SQLException {
+        PrimaryKey primaryKey = table.primaryKey();
+        if (chunks < 2 || primaryKey == null || primaryKey.columns().size() != 1 || !isIntegral(primaryKey.columns().get(0))) {
+            return Collections.singletonList(new TableChunk(table));
+        }
+        String key = primaryKey.columns().get(0).name();
+        final long[] range = new long[2];
+        final boolean[] empty = new boolean[1];
+        new JdbcTemplate(dataSource).query("SELECT MIN(" + key + ") AS low, MAX(" + key + ") AS high FROM "
+                + (schemaName == null ? "" : schemaName + ".") + table.name(), new RowCallbackHandler() {
+            public void processRow(ResultSet rs) throws SQLException {
+                range[0] = rs.getLong("LOW");
+                empty[0] = rs.wasNull();
+                range[1] = rs.getLong("HIGH");
+            }
+        });
+        long width = range[1] - range[0];
+        // width < 0 when the range overflows a long
+        if (empty[0] || width < 0 || width < chunks) return Collections.singletonList(new TableChunk(table));
+
+        long step = width / chunks + 1;
+        List<TableChunk> result = new ArrayList<TableChunk>(chunks);
+        Long previous = null;
+        for (int i = 1; i < chunks && range[0] + i * step <= range[1]; i++) {
+            long bound = range[0] + i * step;
+            List<Object> args = new ArrayList<Object>(2);
+            if (previous != null) args.add(previous);
+            args.add(bound);
+            result.add(new TableChunk(table, (previous == null ? "" : key + " >= ? AND ") + key + " < ?", args));
+            previous = bound;
+        }
+        result.add(new TableChunk(table, key + " >= ?", Collections.<Object>singletonList(previous)));
+        return result;
+    }
+
+    public String getSnapshotClause(DataSource dataSource) throws SQLException {
+        return null;
+    }
+
+    public String getSampleClause(double percent, long seed) {
+        return null;
+    }
+
+    private static boolean isIntegral(Column column) {
+        switch (column.type()) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return true;
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                return column.precision() == 0;
+            default:
+                return false;
+        }
+    }
+
     public boolean supportsUnique() {
         return true;
     }
@@ -241,6 +415,10 @@ public class GenericDialect implements Dialect {
         return false;
     }
 
+    public boolean supportsCachedTables() {
+        return false;
+    }
+
     public String getDriverClassName() {
         throw new UnsupportedOperationException(getClass().getName() + " does not support getDriverClassName()");
     }
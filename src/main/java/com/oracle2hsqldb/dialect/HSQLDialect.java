@@ -126,6 +126,10 @@ public class HSQLDialect extends GenericDialect {
         return true;
     }
 
+    public boolean supportsCachedTables() {
+        return true;
+    }
+
     public String getDriverClassName() {
         return "org.hsqldb.jdbcDriver";
     }
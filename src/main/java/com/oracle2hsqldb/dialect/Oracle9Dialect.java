@@ -22,21 +22,25 @@
 
 package com.oracle2hsqldb.dialect;
 
+import java.math.BigDecimal;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import javax.sql.DataSource;
 
-import org.apache.log4j.Logger;
+import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.util.LinkedMultiValueMap;
@@ -44,9 +48,13 @@ import org.springframework.util.MultiValueMap;
 
 import com.oracle2hsqldb.Column;
 import com.oracle2hsqldb.DefaultValue;
+import com.oracle2hsqldb.ExplicitTableFilter;
+import com.oracle2hsqldb.Index;
 import com.oracle2hsqldb.PrimaryKey;
+import com.oracle2hsqldb.Reference;
 import com.oracle2hsqldb.Sequence;
 import com.oracle2hsqldb.Table;
+import com.oracle2hsqldb.TableChunk;
 import com.oracle2hsqldb.TableFilter;
 import com.oracle2hsqldb.View;
 
@@ -55,8 +63,9 @@ import com.oracle2hsqldb.View;
  * @author Moses Hohman
  */
 public class Oracle9Dialect extends GenericDialect {
-    protected final Logger log = Logger.getLogger(getClass());
-
+    // Oracle rejects IN lists with more than 1000 expressions (ORA-01795)
+    private static final int MAX_IN_LIST_SIZE = 1000;
+    private static final int DEFAULT_TABLE_NAME_PUSH_DOWN_LIMIT = 1000;
     private static final Map<String, Integer> TYPES_BY_NAME = new HashMap<String, Integer>();
     private static final Map<Integer, String> TYPES_BY_TYPE = new HashMap<Integer, String>();
 
@@ -107,6 +116,20 @@ public class Oracle9Dialect extends GenericDialect {
         return new StringBuffer(sequenceName).append(".NEXTVAL").toString();
     }
 
+    private int tableNamePushDownLimit = DEFAULT_TABLE_NAME_PUSH_DOWN_LIMIT;
+
+    /**
+     * When at most this many tables are being read, the column, key and index queries only select the
+     * rows of those tables.  Beyond it the whole schema is read and the rows are filtered here instead.
+     */
+    public int getTableNamePushDownLimit() {
+        return tableNamePushDownLimit;
+    }
+
+    public void setTableNamePushDownLimit(int tableNamePushDownLimit) {
+        this.tableNamePushDownLimit = tableNamePushDownLimit;
+    }
+
     /**
      * performance improvement over GenericDialect's getTables()
      */
@@ -115,20 +138,29 @@ public class Oracle9Dialect extends GenericDialect {
     	if (isSchemaInfoAccessible()) {
             final List<Table.Spec> specs = new ArrayList<Table.Spec>();
 	        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
-	        jdbcTemplate.query("SELECT table_name FROM user_tables ", new RowCallbackHandler() {
+	        List<Object> tableArgs = new ArrayList<Object>();
+	        String tablePredicate = filterPredicate("table_name", filter, tableArgs);
+	        // num_rows and avg_row_len are null until the table has been analyzed
+	        jdbcTemplate.query("SELECT table_name, num_rows, avg_row_len FROM user_tables" + where(tablePredicate), tableArgs.toArray(), new RowCallbackHandler() {
 				public void processRow(ResultSet result) throws SQLException {
 					if (!"TOAD_PLAN_TABLE".equals(result.getString("TABLE_NAME"))) {
-						Table.Spec table = new Table.Spec(result.getString("TABLE_NAME"), Table.Type.TABLE.getJdbcName());
+						Table.Spec table = new Table.Spec(getName(result, "TABLE_NAME"), Table.Type.TABLE.getJdbcName());
+						long rowCount = result.getLong("NUM_ROWS");
+						Long rows = result.wasNull() ? null : rowCount;
+						int averageRowLength = result.getInt("AVG_ROW_LEN");
+						table.setStatistics(rows, result.wasNull() ? null : averageRowLength);
 						if (filter == null || (filter != null && filter.accept(table.getTable()))) {
 							specs.add(table);
 						}
 					}
 				}
 			});
-	        jdbcTemplate.query("SELECT view_name, text FROM user_views",
+	        List<Object> viewArgs = new ArrayList<Object>();
+	        String viewPredicate = filterPredicate("view_name", filter, viewArgs);
+	        jdbcTemplate.query("SELECT view_name, text FROM user_views" + where(viewPredicate), viewArgs.toArray(),
 	                new RowCallbackHandler() {
 	                    public void processRow(ResultSet result) throws SQLException {
-	                    	View.Spec view = new View.Spec(result.getString("VIEW_NAME"), Table.Type.VIEW.getJdbcName(), result.getString("TEXT"));
+	                    	View.Spec view = new View.Spec(getName(result, "VIEW_NAME"), Table.Type.VIEW.getJdbcName(), result.getString("TEXT"));
 							if (filter == null || (filter != null && filter.accept(view.getTable()))) {
 		                        specs.add(view);
 							}
@@ -147,6 +179,8 @@ public class Oracle9Dialect extends GenericDialect {
     public MultiValueMap<String, Column.Spec> getColumns(final DataSource dataSource, String schemaName, List<Table.Spec> tables) throws SQLException {
     	if (isSchemaInfoAccessible()) {
 	        final MultiValueMap<String, Column.Spec> specs = new LinkedMultiValueMap<String, Column.Spec>();
+	        List<Object> args = new ArrayList<Object>();
+	        String predicate = tableNamePredicate("table_name", tables, args);
 	        new JdbcTemplate(dataSource).query("SELECT " +
 	                "column_name, " +
 	                "table_name, " +
@@ -155,15 +189,15 @@ public class Oracle9Dialect extends GenericDialect {
 	                "data_scale AS decimal_digits," +
 	                "DECODE(nullable, 'Y', 1, 0) AS nullable," +
 	                "data_default AS column_def " +
-	                "FROM user_tab_columns",
+	                "FROM user_tab_columns" + where(predicate), args.toArray(),
 	                new RowCallbackHandler() {
 	                    public void processRow(ResultSet columns) throws SQLException {
 					// retrieve values ahead of time, otherwise you get a stream
 					// closed error from Oracle
-					String columnName = columns.getString("COLUMN_NAME");
+					String columnName = getName(columns, "COLUMN_NAME");
 					if (log.isDebugEnabled())
 						log.debug("Reading column " + columnName);
-					String tableName = columns.getString("TABLE_NAME");
+					String tableName = getName(columns, "TABLE_NAME");
 					try {
 						int dataType = getType(columns.getString("DATA_TYPE"));
 						
@@ -193,18 +227,20 @@ public class Oracle9Dialect extends GenericDialect {
     public Map<String, PrimaryKey.Spec> getPrimaryKeys(DataSource dataSource, String schemaName, List<Table.Spec> tables) {
     	if (isSchemaInfoAccessible()) {
 	        final Map<String, PrimaryKey.Spec> byTableName = new HashMap<String, PrimaryKey.Spec>();
-	        new JdbcTemplate(dataSource).query("SELECT ucc.column_name, ucc.constraint_name, ucc.table_name " +
+	        List<Object> args = new ArrayList<Object>();
+	        String predicate = tableNamePredicate("ucc.table_name", tables, args);
+	        new JdbcTemplate(dataSource).query("SELECT ucc.column_name, ucc.constraint_name, ucc.table_name, ucc.position " +
 	                "FROM user_constraints uc INNER JOIN user_cons_columns ucc ON ucc.constraint_name=uc.constraint_name " +
-	                "WHERE uc.constraint_type='P'",
+	                "WHERE uc.constraint_type='P'" + and(predicate) + " " +
+	                "ORDER BY ucc.table_name, ucc.position", args.toArray(),
 	                new RowCallbackHandler() {
 	                    public void processRow(ResultSet columns) throws SQLException {
 	                        if (log.isDebugEnabled()) log.debug("Reading primary key:column " + columns.getString("CONSTRAINT_NAME") + ":" + columns.getString("COLUMN_NAME"));
-	                        String tableName = columns.getString("TABLE_NAME");
+	                        String tableName = getName(columns, "TABLE_NAME");
 	                        if (!byTableName.containsKey(tableName)) {
-	                            byTableName.put(tableName, new PrimaryKey.Spec(tableName, columns.getString("CONSTRAINT_NAME")));
+	                            byTableName.put(tableName, new PrimaryKey.Spec(tableName, getName(columns, "CONSTRAINT_NAME")));
 	                        }
-	                        byTableName.get(tableName).addColumnName(columns.getString("COLUMN_NAME"));
-	
+	                        byTableName.get(tableName).addColumnName(getName(columns, "COLUMN_NAME"), columns.getInt("POSITION"));
 	                    }
 	                });
 	        return byTableName;
@@ -213,6 +249,242 @@ public class Oracle9Dialect extends GenericDialect {
     	}
     }
 
+    /**
+     * performance improvement over GenericDialect's getForeignKeys()
+     */
+    @Override
+    public List<Reference.Spec> getForeignKeys(DataSource dataSource, String schemaName, List<Table.Spec> tables) {
+    	if (isSchemaInfoAccessible()) {
+	        final List<Reference.Spec> result = new ArrayList<Reference.Spec>();
+	        final Set<String> tableNames = getTableNames(tables);
+	        List<Object> args = new ArrayList<Object>();
+	        String predicate = tableNamePredicate("ucc.table_name", tables, args);
+	        // the referenced columns are outer joined, since they are not visible if they belong to another schema
+	        new JdbcTemplate(dataSource).query("SELECT ucc.constraint_name, ucc.table_name, ucc.column_name, " +
+	                "rcc.table_name AS r_table_name, rcc.column_name AS r_column_name " +
+	                "FROM user_constraints uc INNER JOIN user_cons_columns ucc ON ucc.constraint_name=uc.constraint_name " +
+	                "LEFT OUTER JOIN user_cons_columns rcc ON rcc.owner=uc.r_owner AND rcc.constraint_name=uc.r_constraint_name AND rcc.position=ucc.position " +
+	                "WHERE uc.constraint_type='R'" + and(predicate) + " " +
+	                "ORDER BY ucc.table_name, ucc.constraint_name, ucc.position", args.toArray(),
+	                new RowCallbackHandler() {
+	                    public void processRow(ResultSet columns) throws SQLException {
+	                        String tableName = getName(columns, "TABLE_NAME");
+	                        if (tableNames.contains(tableName)) {
+	                            if (log.isDebugEnabled()) log.debug("Reading foreign key:column " + columns.getString("CONSTRAINT_NAME") + ":" + columns.getString("COLUMN_NAME"));
+	                            result.add(new Reference.Spec(tableName, getName(columns, "COLUMN_NAME"), getName(columns, "CONSTRAINT_NAME"),
+	                                    getName(columns, "R_TABLE_NAME"), getName(columns, "R_COLUMN_NAME")));
+	                        }
+	                    }
+	                });
+	        return result;
+    	} else {
+    		return super.getForeignKeys(dataSource, schemaName, tables);
+    	}
+    }
+
+    /**
+     * performance improvement over GenericDialect's getIndicies(). DatabaseMetaData.getIndexInfo() is slow
+     * on Oracle, and was being called once per table.
+     */
+    @Override
+    public List<Index.Spec> getIndicies(DataSource dataSource, String schemaName, List<Table.Spec> tables, List<Reference.Spec> foreignKeys) {
+    	if (isSchemaInfoAccessible()) {
+	        final List<Index.Spec> result = new ArrayList<Index.Spec>();
+	        final Set<String> tableNames = getTableNames(tables);
+	        List<Object> args = new ArrayList<Object>();
+	        String predicate = tableNamePredicate("uic.table_name", tables, args);
+	        // function-based indexes are skipped, their columns are hidden virtual columns
+	        new JdbcTemplate(dataSource).query("SELECT uic.index_name, uic.table_name, uic.column_name, ui.uniqueness " +
+	                "FROM user_indexes ui INNER JOIN user_ind_columns uic ON uic.index_name=ui.index_name " +
+	                "WHERE ui.index_type NOT LIKE 'FUNCTION-BASED%'" + and(predicate) + " " +
+	                "ORDER BY uic.table_name, uic.index_name, uic.column_position", args.toArray(),
+	                new RowCallbackHandler() {
+	                    public void processRow(ResultSet columns) throws SQLException {
+	                        String tableName = getName(columns, "TABLE_NAME");
+	                        if (tableNames.contains(tableName)) {
+	                            if (log.isDebugEnabled()) log.debug("Reading index:column " + columns.getString("INDEX_NAME") + ":" + columns.getString("COLUMN_NAME"));
+	                            result.add(new Index.Spec(tableName, getName(columns, "COLUMN_NAME"), getName(columns, "INDEX_NAME"),
+	                                    "UNIQUE".equals(columns.getString("UNIQUENESS"))));
+	                        }
+	                    }
+	                });
+	        addForeignKeyIndicies(result, foreignKeys);
+	        return result;
+    	} else {
+    		return super.getIndicies(dataSource, schemaName, tables, foreignKeys);
+    	}
+    }
+
+    /**
+     * Splits a table into ROWID ranges over its extents, whatever its key.  Each chunk covers about the
+     * same number of blocks, and is read by scanning just those blocks.  Tables without extents of their
+     * own, like index organized ones, are split by the superclass.
+     */
+    @Override
+    public List<TableChunk> getChunks(DataSource dataSource, String schemaName, Table table, int chunks) throws SQLException {
+        if (!isSchemaInfoAccessible() || chunks < 2) return super.getChunks(dataSource, schemaName, table, chunks);
+        final List<String[]> extents = new ArrayList<String[]>();
+        final List<Long> blocks = new ArrayList<Long>();
+        // in ROWID order, the first and last possible ROWIDs of each extent
+        new JdbcTemplate(dataSource).query("SELECT " +
+                "ROWIDTOCHAR(DBMS_ROWID.ROWID_CREATE(1, o.data_object_id, e.relative_fno, e.block_id, 0)) AS first_rowid, " +
+                "ROWIDTOCHAR(DBMS_ROWID.ROWID_CREATE(1, o.data_object_id, e.relative_fno, e.block_id + e.blocks - 1, 32767)) AS last_rowid, " +
+                "e.blocks " +
+                "FROM user_extents e INNER JOIN user_objects o ON o.object_name=e.segment_name " +
+                "AND NVL(o.subobject_name, ' ')=NVL(e.partition_name, ' ') " +
+                "WHERE e.segment_name=? AND e.segment_type IN ('TABLE', 'TABLE PARTITION', 'TABLE SUBPARTITION') " +
+                "AND o.object_type IN ('TABLE', 'TABLE PARTITION', 'TABLE SUBPARTITION') " +
+                "ORDER BY o.data_object_id, e.relative_fno, e.block_id", new Object[] { table.name() },
+                new RowCallbackHandler() {
+                    public void processRow(ResultSet extent) throws SQLException {
+                        extents.add(new String[] { extent.getString("FIRST_ROWID"), extent.getString("LAST_ROWID") });
+                        blocks.add(extent.getLong("BLOCKS"));
+                    }
+                });
+        if (extents.isEmpty()) return super.getChunks(dataSource, schemaName, table, chunks);
+        return rowidChunks(table, extents, blocks, chunks);
+    }
+
+    /**
+     * Reads the current SCN for flashback queries.  DBMS_FLASHBACK needs the execute privilege on it,
+     * V$DATABASE the select privilege; users usually have one or the other.
+     */
+    @Override
+    public String getSnapshotClause(DataSource dataSource) throws SQLException {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        Number scn;
+        try {
+            scn = jdbcTemplate.queryForObject("SELECT DBMS_FLASHBACK.GET_SYSTEM_CHANGE_NUMBER FROM DUAL", Number.class);
+        } catch (DataAccessException e) {
+            log.info("Could not read the SCN from DBMS_FLASHBACK, trying V$DATABASE: " + e.getMessage());
+            scn = jdbcTemplate.queryForObject("SELECT current_scn FROM v$database", Number.class);
+        }
+        return "AS OF SCN " + scn.longValue();
+    }
+
+    /**
+     * SAMPLE picks rows, SAMPLE BLOCK would be faster but pick them in clumps.  SEED needs Oracle 10g.
+     */
+    @Override
+    public String getSampleClause(double percent, long seed) {
+        return "SAMPLE (" + BigDecimal.valueOf(percent).toPlainString() + ") SEED (" + seed + ")";
+    }
+
+    /**
+     * Groups consecutive extents into chunks of at least the average number of blocks per chunk.
+     *
+     * @param extents the first and last ROWID of each extent, in ROWID order
+     * @param blocks the number of blocks in each extent
+     */
+    static List<TableChunk> rowidChunks(Table table, List<String[]> extents, List<Long> blocks, int chunks) {
+        long total = 0;
+        for (Long extentBlocks : blocks) {
+            total += extentBlocks;
+        }
+        long chunkBlocks = (total + chunks - 1) / chunks;
+        List<TableChunk> result = new ArrayList<TableChunk>(chunks);
+        int first = 0;
+        long accumulated = 0;
+        for (int i = 0; i < extents.size(); i++) {
+            accumulated += blocks.get(i);
+            if (accumulated >= chunkBlocks || i == extents.size() - 1) {
+                result.add(new TableChunk(table, "ROWID BETWEEN CHARTOROWID(?) AND CHARTOROWID(?)",
+                        Arrays.<Object>asList(extents.get(first)[0], extents.get(i)[1])));
+                first = i + 1;
+                accumulated = 0;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return a predicate selecting the rows of the given tables, or null if there are too many of them to be worth it
+     */
+    private String tableNamePredicate(String column, List<Table.Spec> tables, List<Object> args) {
+        if (tables.isEmpty()) return "1=0";
+        if (tables.size() > tableNamePushDownLimit) return null;
+        return inList(column, getTableNames(tables), false, args);
+    }
+
+    /**
+     * @return a predicate selecting the tables an explicit filter could accept, or null if it can't be expressed in SQL
+     */
+    static String filterPredicate(String column, TableFilter filter, List<Object> args) {
+        if (!(filter instanceof ExplicitTableFilter)) return null;
+        ExplicitTableFilter explicit = (ExplicitTableFilter) filter;
+        Set<String> includedPrefixes = explicit.getIncludedPrefixes();
+        if (includedPrefixes == null) {
+            // some included pattern could match anything
+            return null;
+        } else if (!explicit.getIncludedTables().isEmpty() || !includedPrefixes.isEmpty()) {
+            List<String> predicates = new ArrayList<String>();
+            if (!explicit.getIncludedTables().isEmpty()) predicates.add(inList(column, explicit.getIncludedTables(), false, args));
+            for (String prefix : includedPrefixes) {
+                predicates.add(like(column, prefix, false, args));
+            }
+            return join(predicates, " OR ");
+        } else if (!explicit.getExcludedTables().isEmpty() || !explicit.getExcludedPrefixes().isEmpty()) {
+            List<String> predicates = new ArrayList<String>();
+            if (!explicit.getExcludedTables().isEmpty()) predicates.add(inList(column, explicit.getExcludedTables(), true, args));
+            for (String prefix : explicit.getExcludedPrefixes()) {
+                predicates.add(like(column, prefix, true, args));
+            }
+            return join(predicates, " AND ");
+        }
+        return null;
+    }
+
+    private static String like(String column, String prefix, boolean negate, List<Object> args) {
+        args.add(prefix.replace("\\", "\\\\").replace("_", "\\_").replace("%", "\\%") + "%");
+        return column + (negate ? " NOT LIKE ? ESCAPE '\\'" : " LIKE ? ESCAPE '\\'");
+    }
+
+    private static String join(List<String> predicates, String operator) {
+        StringBuilder result = new StringBuilder("(");
+        for (String predicate : predicates) {
+            if (result.length() > 1) result.append(operator);
+            result.append(predicate);
+        }
+        return result.append(")").toString();
+    }
+
+    /**
+     * Builds "(column IN (?, ...) OR column IN (?, ...))", or the NOT IN equivalent, with each IN list
+     * below Oracle's limit, and adds the values to args.
+     */
+    static String inList(String column, Collection<String> values, boolean negate, List<Object> args) {
+        StringBuilder sql = new StringBuilder("(");
+        int i = 0;
+        for (String value : values) {
+            if (i % MAX_IN_LIST_SIZE == 0) {
+                if (i > 0) sql.append(") ").append(negate ? "AND " : "OR ");
+                sql.append(column).append(negate ? " NOT IN (" : " IN (");
+            } else {
+                sql.append(", ");
+            }
+            sql.append("?");
+            args.add(value);
+            i++;
+        }
+        return sql.append("))").toString();
+    }
+
+    private static String where(String predicate) {
+        return predicate == null ? "" : " WHERE " + predicate;
+    }
+
+    private static String and(String predicate) {
+        return predicate == null ? "" : " AND " + predicate;
+    }
+
+    private static Set<String> getTableNames(List<Table.Spec> tables) {
+        Set<String> tableNames = new HashSet<String>();
+        for (Table.Spec table : tables) {
+        	tableNames.add(table.getTableName());
+        }
+        return tableNames;
+    }
+
     /**
      * Superclass returns nothing.
      */
@@ -235,6 +507,28 @@ public class Oracle9Dialect extends GenericDialect {
     	}
     }
 
+    @Override
+    public Map<String, Date> getLastDdlTimes(DataSource dataSource, String schemaName, final TableFilter filter) throws SQLException {
+        if (isSchemaInfoAccessible()) {
+            final Map<String, Date> times = new LinkedHashMap<String, Date>();
+            List<Object> args = new ArrayList<Object>();
+            String predicate = filterPredicate("object_name", filter, args);
+            new JdbcTemplate(dataSource).query("SELECT object_name, last_ddl_time FROM user_objects " +
+                    "WHERE object_type IN ('TABLE', 'VIEW')" + and(predicate), args.toArray(),
+                    new RowCallbackHandler() {
+                        public void processRow(ResultSet rs) throws SQLException {
+                            String name = rs.getString("OBJECT_NAME");
+                            if (!"TOAD_PLAN_TABLE".equals(name) && (filter == null || filter.accept(new Table(name)))) {
+                                times.put(name, rs.getTimestamp("LAST_DDL_TIME"));
+                            }
+                        }
+                    });
+            return times;
+        } else {
+            return super.getLastDdlTimes(dataSource, schemaName, filter);
+        }
+    }
+
     private static final String SYSDATE_STRING = "SYSDATE";
     private static final String SYSTIMESTAMP_STRING = "SYSTIMESTAMP";
     private static final Set<String> NOW_STRINGS = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(new String[]{SYSDATE_STRING, SYSTIMESTAMP_STRING})));
@@ -87,6 +87,32 @@ public class ColumnTest extends TestCase {
         assertTrue("column not unique", column.isUnique());
     }
 
+    public void testRolesFollowChangesToTable() {
+        Column a = new Column("a", 1, 0, 0, false);
+        Column b = new Column("b", 1, 0, 0, false);
+        Table table = new Table("t", Table.Type.TABLE);
+        table.addColumn(a);
+        table.addColumn(b);
+        Index index = new Index("uk", true);
+        a.indexedBy(index);
+        assertTrue("a not unique", a.isUnique());
+
+        b.indexedBy(index);
+        assertFalse("a unique after index widened", a.isUnique());
+        assertTrue("a not unique key member", a.isUniqueKeyMember());
+
+        table.removeIndex(index);
+        assertFalse("b unique key member after index removed", b.isUniqueKeyMember());
+
+        PrimaryKey pk = new PrimaryKey();
+        pk.addColumn(a);
+        table.primaryKey(pk);
+        assertTrue("a not key", a.isPrimaryKey());
+        pk.addColumn(b);
+        assertFalse("a key after key widened", a.isPrimaryKey());
+        assertTrue("b not key member", b.isPrimaryKeyMember());
+    }
+
     public void testConstrainByMustBeCalledAfterColumnAddedToTable() {
         try {
             new Column("id", 1, 0, 0, false).indexedBy(new Index("whatever", true));
@@ -0,0 +1,140 @@
+/*
+ * Schemamule, a library for automating database schema tasks
+ * Copyright (C) 2006, Moses M. Hohman and Rhett Sutphin
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St., 5th Floor, Boston, MA  02110-1301
+
+ * To contact the authors, send email to:
+ * { mmhohman OR rsutphin } AT sourceforge DOT net
+ */
+
+package com.oracle2hsqldb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class CopySchedulerTest extends TestCase {
+    private Schema schema = new Schema("s");
+    private ForeignKeyGraph graph;
+    private List<Table> tables = new ArrayList<Table>();
+    private Map<Table, List<TableChunk>> chunks = new HashMap<Table, List<TableChunk>>();
+
+    protected void setUp() throws Exception {
+        String[] names = { "a", "b", "c", "d", "e", "f", "g" };
+        long[] rows = { 10, 20, 100, 30, 5, 50, 1 };
+        for (int i = 0; i < names.length; i++) {
+            Table table = new Table(names[i]);
+            table.addColumn(new Column("id", 1, 0, 0, false));
+            table.addColumn(new Column("parent_id", 1, 0, 0, true));
+            table.addColumn(new Column("other_id", 1, 0, 0, true));
+            table.statistics(rows[i], 10);
+            schema.addTable(table);
+        }
+        reference("b", "parent_id", "a");
+        reference("c", "parent_id", "b");
+        reference("d", "parent_id", "a");
+        reference("e", "parent_id", "f");
+        reference("f", "parent_id", "e");
+        reference("f", "other_id", "a");
+        reference("g", "parent_id", "g");
+        graph = new ForeignKeyGraph(schema);
+        tables.addAll(graph.topologicalOrder());
+    }
+
+    public void testBiggestTablesFirst() throws InterruptedException {
+        assertEquals("[c, f, d, b, a, e, g]", runInTurn(new CopyScheduler(tables, chunks, graph, false)));
+    }
+
+    public void testBiggestReadyTableFirstWithParentsFirst() throws InterruptedException {
+        // f is in a cycle with e, it only waits for the one before it
+        assertEquals("[a, d, b, c, e, f, g]", runInTurn(new CopyScheduler(tables, chunks, graph, true)));
+    }
+
+    public void testTablesWithoutStatisticsLast() throws InterruptedException {
+        schema.findTable("a").statistics(null, null);
+        assertEquals("[c, f, d, b, e, g, a]", runInTurn(new CopyScheduler(tables, chunks, graph, false)));
+    }
+
+    public void testWaitsForParentsCopiedByOtherThreads() throws Exception {
+        final CopyScheduler scheduler = new CopyScheduler(tables, chunks, graph, true);
+        final TableChunk a = scheduler.next();
+        assertEquals("a", a.table().name());
+        assertEquals("e", scheduler.next().table().name());
+        assertEquals("g", scheduler.next().table().name());
+        new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                scheduler.done(a);
+            }
+        }.start();
+        assertEquals("d", scheduler.next().table().name());
+    }
+
+    public void testChunksSizedAsTheirShareOfTheTable() throws InterruptedException {
+        split("c", 3);
+        assertEquals("[f, c[0], c[1], c[2], d, b, a, e, g]", runInTurn(new CopyScheduler(tables, chunks, graph, false)));
+    }
+
+    public void testChildrenWaitForEveryChunkOfTheirParent() throws Exception {
+        split("a", 2);
+        CopyScheduler scheduler = new CopyScheduler(tables, chunks, graph, true);
+        TableChunk first = scheduler.next();
+        TableChunk second = scheduler.next();
+        assertEquals("[0]", first.args().toString());
+        assertEquals("[1]", second.args().toString());
+        scheduler.done(second);
+        assertEquals("e", scheduler.next().table().name());
+        assertEquals("g", scheduler.next().table().name());
+        scheduler.done(first);
+        assertEquals("d", scheduler.next().table().name());
+    }
+
+    public void testHandsOutNothingAfterAFailure() throws InterruptedException {
+        CopyScheduler scheduler = new CopyScheduler(tables, chunks, graph, false);
+        scheduler.next();
+        scheduler.failed();
+        assertNull(scheduler.next());
+    }
+
+    private String runInTurn(CopyScheduler scheduler) throws InterruptedException {
+        List<String> names = new ArrayList<String>();
+        for (TableChunk chunk = scheduler.next(); chunk != null; chunk = scheduler.next()) {
+            names.add(chunk.isWholeTable() ? chunk.table().name() : chunk.table().name() + chunk.args());
+            scheduler.done(chunk);
+        }
+        return names.toString();
+    }
+
+    private void split(String table, int count) {
+        List<TableChunk> tableChunks = new ArrayList<TableChunk>();
+        for (int i = 0; i < count; i++) {
+            tableChunks.add(new TableChunk(schema.findTable(table), "id % " + count + " = ?", Arrays.<Object>asList(i)));
+        }
+        chunks.put(schema.findTable(table), tableChunks);
+    }
+
+    private void reference(String table, String column, String parent) {
+        schema.findTable(table).findColumn(column).reference(new Reference("fk_" + table + "_" + column, schema.findTable(parent).findColumn("id")));
+    }
+}
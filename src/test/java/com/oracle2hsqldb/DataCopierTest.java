@@ -0,0 +1,422 @@
+/*
+ * Schemamule, a library for automating database schema tasks
+ * Copyright (C) 2006, Moses M. Hohman and Rhett Sutphin
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St., 5th Floor, Boston, MA  02110-1301
+
+ * To contact the authors, send email to:
+ * { mmhohman OR rsutphin } AT sourceforge DOT net
+ */
+
+package com.oracle2hsqldb;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.sql.DataSource;
+
+import junit.framework.TestCase;
+
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.oracle2hsqldb.dialect.HSQLDialect;
+
+public class DataCopierTest extends TestCase {
+    private static final int BOOKS = 25;
+
+    private DriverManagerDataSource source = new DriverManagerDataSource("jdbc:hsqldb:mem:copy_src", "sa", "");
+    private DriverManagerDataSource target = new DriverManagerDataSource("jdbc:hsqldb:mem:copy_dst", "sa", "");
+    private Connection from;
+    private Connection to;
+
+    static {
+        try {
+            Class.forName("org.hsqldb.jdbcDriver");
+        } catch (Exception e) {
+            System.err.println("ERROR: failed to load HSQLDB JDBC driver");
+            e.printStackTrace(System.err);
+        }
+    }
+
+    protected void setUp() throws Exception {
+        from = source.getConnection();
+        to = target.getConnection();
+        // T_BOOKS sorts before the table it references, the target's foreign key fails unless parents go first
+        for (Connection conn : new Connection[] { from, to }) {
+            Statement stmt = conn.createStatement();
+            stmt.execute("CREATE TABLE T_PUBLISHERS (id INTEGER PRIMARY KEY, name VARCHAR(40) NOT NULL)");
+            stmt.execute("CREATE TABLE T_BOOKS (id INTEGER PRIMARY KEY, publisher_id INTEGER, title VARCHAR(80), " +
+                    "published TIMESTAMP, price DECIMAL(8,2), blurb CLOB, cover BLOB, " +
+                    "CONSTRAINT fk_book_publisher FOREIGN KEY (publisher_id) REFERENCES T_PUBLISHERS)");
+            stmt.execute("CREATE VIEW V_TITLES AS SELECT title FROM T_BOOKS");
+            stmt.close();
+        }
+        Statement stmt = from.createStatement();
+        stmt.execute("INSERT INTO T_PUBLISHERS VALUES (1, 'Penguin')");
+        stmt.execute("INSERT INTO T_PUBLISHERS VALUES (2, 'Vintage')");
+        stmt.close();
+        PreparedStatement insert = from.prepareStatement("INSERT INTO T_BOOKS VALUES (?, ?, ?, ?, ?, ?, ?)");
+        for (int i = 0; i < BOOKS; i++) {
+            insert.setInt(1, i);
+            insert.setObject(2, i % 5 == 0 ? null : new Integer(i % 2 + 1), java.sql.Types.INTEGER);
+            insert.setString(3, "Book " + i);
+            insert.setTimestamp(4, new Timestamp(1000000000000L + i * 86400000L));
+            insert.setBigDecimal(5, new BigDecimal(i + ".95"));
+            insert.setString(6, i % 3 == 0 ? null : "About book " + i);
+            insert.setBytes(7, new byte[] { (byte) i, 1, 2 });
+            insert.executeUpdate();
+        }
+        insert.close();
+    }
+
+    protected void tearDown() throws Exception {
+        from.createStatement().execute("SHUTDOWN");
+        to.createStatement().execute("SHUTDOWN");
+    }
+
+    public void testCopiesEveryTableInBatches() throws SQLException {
+        Schema schema = new SchemaReader(from).read("PUBLIC");
+        DataCopier copier = new DataCopier(source, target);
+        copier.setFetchSize(4);
+        // doesn't divide the row count, so the last batch is a partial one
+        copier.setBatchSize(7);
+
+        assertEquals(2 + BOOKS, copier.copy(schema));
+
+        assertEquals(BOOKS, count("T_BOOKS"));
+        assertEquals(2, count("T_PUBLISHERS"));
+        ResultSet rows = to.createStatement().executeQuery("SELECT * FROM T_BOOKS WHERE id IN (10, 12) ORDER BY id");
+        assertTrue(rows.next());
+        assertNull(rows.getObject("publisher_id"));
+        assertEquals("Book 10", rows.getString("title"));
+        assertEquals(new Timestamp(1000000000000L + 10 * 86400000L), rows.getTimestamp("published"));
+        assertEquals(new BigDecimal("10.95"), rows.getBigDecimal("price"));
+        assertEquals("About book 10", rows.getString("blurb"));
+        assertEquals(10, rows.getBytes("cover")[0]);
+        assertTrue(rows.next());
+        assertEquals(1, rows.getInt("publisher_id"));
+        assertNull(rows.getString("blurb"));
+        rows.close();
+    }
+
+    public void testCopiesTablesConcurrentlyParentsFirst() throws SQLException {
+        Schema schema = new SchemaReader(from).read("PUBLIC");
+        // the bigger child would go first if it didn't have to wait for its parent
+        schema.findTable("T_BOOKS").statistics(new Long(BOOKS), 100);
+        schema.findTable("T_PUBLISHERS").statistics(new Long(2), 20);
+        DataCopier copier = new DataCopier(source, target);
+        copier.setThreads(2);
+        copier.setParentsFirst(true);
+
+        assertEquals(2 + BOOKS, copier.copy(schema));
+
+        assertEquals(BOOKS, count("T_BOOKS"));
+        assertEquals(2, count("T_PUBLISHERS"));
+    }
+
+    public void testSplitsBigTablesIntoPrimaryKeyRanges() throws SQLException {
+        Schema schema = new SchemaReader(from).read("PUBLIC");
+        Table books = schema.findTable("T_BOOKS");
+        List<TableChunk> chunks = new HSQLDialect().getChunks(source, schema.name(), books, 3);
+        assertEquals(3, chunks.size());
+        assertEquals("ID < ?", chunks.get(0).condition());
+        assertEquals(Arrays.<Object>asList(9L), chunks.get(0).args());
+        assertEquals("ID >= ? AND ID < ?", chunks.get(1).condition());
+        assertEquals(Arrays.<Object>asList(9L, 18L), chunks.get(1).args());
+        assertEquals("ID >= ?", chunks.get(2).condition());
+
+        books.statistics(new Long(BOOKS), 100);
+        DataCopier copier = new DataCopier(source, target);
+        copier.setDialect(new HSQLDialect());
+        copier.setThreads(3);
+        copier.setChunkSize(1000);
+        copier.setParentsFirst(true);
+
+        assertEquals(2 + BOOKS, copier.copy(schema));
+        assertEquals(BOOKS, count("T_BOOKS"));
+    }
+
+    public void testRetriesFailedChunksAndTables() throws SQLException {
+        Schema schema = new SchemaReader(from).read("PUBLIC");
+        schema.findTable("T_BOOKS").statistics(new Long(BOOKS), 100);
+        final Set<String> failed = new HashSet<String>();
+        DataCopier copier = new DataCopier(source, target) {
+            protected long copyRows(Connection from, Connection to, String schemaName, TableChunk chunk, String asOf) throws SQLException {
+                if (chunk.isWholeTable()) {
+                    // the whole table's rows are committed before it fails
+                    long rows = super.copyRows(from, to, schemaName, chunk, asOf);
+                    if (failed.add(chunk.toString())) throw new SQLException("connection reset");
+                    return rows;
+                }
+                if (failed.add(chunk.toString())) throw new SQLException("connection reset");
+                return super.copyRows(from, to, schemaName, chunk, asOf);
+            }
+        };
+        copier.setDialect(new HSQLDialect());
+        copier.setChunkSize(1000);
+        copier.setParentsFirst(true);
+
+        assertEquals(2 + BOOKS, copier.copy(schema));
+        assertEquals(4, failed.size());
+        assertEquals(BOOKS, count("T_BOOKS"));
+        assertEquals(2, count("T_PUBLISHERS"));
+    }
+
+    public void testRetriesFailedTablesCopyingOneAtATime() throws SQLException {
+        Schema schema = new SchemaReader(from).read("PUBLIC");
+        final Set<String> failed = new HashSet<String>();
+        DataCopier copier = new DataCopier(source, target) {
+            protected long copyRows(Connection from, Connection to, String schemaName, TableChunk chunk, String asOf) throws SQLException {
+                // the table's rows are committed before it fails
+                long rows = super.copyRows(from, to, schemaName, chunk, asOf);
+                if (failed.add(chunk.toString())) throw new SQLException("connection reset");
+                return rows;
+            }
+        };
+
+        assertEquals(2 + BOOKS, copier.copy(schema));
+        assertEquals(2, failed.size());
+        assertEquals(BOOKS, count("T_BOOKS"));
+        assertEquals(2, count("T_PUBLISHERS"));
+    }
+
+    public void testFailureWaitsForTheTablesStillBeingCopied() throws Exception {
+        Schema schema = new SchemaReader(from).read("PUBLIC");
+        final CountDownLatch started = new CountDownLatch(2);
+        final AtomicBoolean booksDone = new AtomicBoolean();
+        DataCopier copier = new DataCopier(source, target) {
+            protected long copyRows(Connection from, Connection to, String schemaName, TableChunk chunk, String asOf) throws SQLException {
+                started.countDown();
+                try {
+                    started.await();
+                    if (chunk.table().name().equals("T_PUBLISHERS")) throw new SQLException("connection reset");
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                try {
+                    // fails too, its parents never arrive
+                    return super.copyRows(from, to, schemaName, chunk, asOf);
+                } finally {
+                    booksDone.set(true);
+                }
+            }
+        };
+        copier.setThreads(2);
+        copier.setParentsFirst(false);
+        copier.setRetries(0);
+
+        try {
+            copier.copy(schema);
+            fail("copying T_PUBLISHERS failed");
+        } catch (SQLException expected) {
+        }
+        assertTrue("copy returned while T_BOOKS was still being copied", booksDone.get());
+    }
+
+    public void testEveryQueryReadsTheSnapshotTakenAtTheStart() throws SQLException {
+        Schema schema = new SchemaReader(from).read("PUBLIC");
+        schema.findTable("T_BOOKS").statistics(new Long(BOOKS), 100);
+        final List<String> snapshots = Collections.synchronizedList(new ArrayList<String>());
+        final List<String> queries = Collections.synchronizedList(new ArrayList<String>());
+        DataCopier copier = new DataCopier(source, target) {
+            protected String selectSql(String schemaName, TableChunk chunk, List<Column> columns, String asOf) {
+                String sql = super.selectSql(schemaName, chunk, columns, asOf);
+                queries.add(sql);
+                // HSQLDB has no flashback queries
+                return sql.replace(" AS OF SCN 42", "");
+            }
+        };
+        copier.setDialect(new HSQLDialect() {
+            public String getSnapshotClause(DataSource dataSource) {
+                snapshots.add("AS OF SCN 42");
+                return "AS OF SCN 42";
+            }
+        });
+        copier.setThreads(3);
+        copier.setChunkSize(1000);
+        copier.setSnapshot(true);
+        copier.setParentsFirst(true);
+
+        assertEquals(2 + BOOKS, copier.copy(schema));
+        assertEquals(1, snapshots.size());
+        assertEquals("publishers and three chunks of books", 4, queries.size());
+        for (String query : queries) {
+            assertTrue(query, query.matches("SELECT .* FROM PUBLIC\\.T_\\w+ AS OF SCN 42( WHERE .*)?"));
+        }
+    }
+
+    public void testCopiesOnOneCopierKeepTheirOwnSnapshots() throws SQLException {
+        final Schema schema = new SchemaReader(from).read("PUBLIC");
+        final List<String> outer = new ArrayList<String>();
+        final List<String> inner = new ArrayList<String>();
+        final int[] scn = { 0 };
+        DataCopier copier = new DataCopier(source, target) {
+            protected long copyRows(Connection from, Connection to, String schemaName, TableChunk chunk, String asOf) throws SQLException {
+                if (!asOf.endsWith(" 1")) {
+                    inner.add(asOf);
+                    return 0;
+                }
+                outer.add(asOf);
+                // another copy with this copier starts while the first one is under way
+                if (outer.size() == 1) copy(schema);
+                return 0;
+            }
+        };
+        copier.setDialect(new HSQLDialect() {
+            public String getSnapshotClause(DataSource dataSource) {
+                return "AS OF SCN " + ++scn[0];
+            }
+        });
+        copier.setSnapshot(true);
+
+        copier.copy(schema);
+        assertEquals(Arrays.asList("AS OF SCN 1", "AS OF SCN 1"), outer);
+        assertEquals(Arrays.asList("AS OF SCN 2", "AS OF SCN 2"), inner);
+    }
+
+    public void testSnapshotWithoutFlashbackCopiesInOneTransaction() throws SQLException {
+        Schema schema = new SchemaReader(from).read("PUBLIC");
+        DataCopier copier = new DataCopier(source, target);
+        copier.setDialect(new HSQLDialect());
+        copier.setThreads(3);
+        copier.setSnapshot(true);
+
+        assertEquals(2 + BOOKS, copier.copy(schema));
+        assertEquals(BOOKS, count("T_BOOKS"));
+        assertEquals(2, count("T_PUBLISHERS"));
+    }
+
+    public void testSubsetCopiesTheDrivingRowsAndOnlyTheRowsTheyReference() throws SQLException {
+        Schema schema = new SchemaReader(from).read("PUBLIC");
+        Subset subset = new Subset();
+        // only book 5 has no publisher, books 3 and 7 are both Vintage's
+        subset.addDrivingTable("T_BOOKS", "id IN (3, 5, 7)", null);
+        DataCopier copier = new DataCopier(source, target);
+        copier.setThreads(2);
+        copier.setSubset(subset);
+        copier.setParentsFirst(true);
+
+        assertEquals(3 + 1, copier.copy(schema));
+
+        assertEquals(3, count("T_BOOKS"));
+        ResultSet rows = to.createStatement().executeQuery("SELECT id, name FROM T_PUBLISHERS");
+        assertTrue(rows.next());
+        assertEquals(2, rows.getInt("id"));
+        assertEquals("Vintage", rows.getString("name"));
+        assertFalse(rows.next());
+        rows.close();
+    }
+
+    public void testSubsetSelectsTheRowsACompositeForeignKeyReferencesByTheirWholeKey() throws SQLException {
+        for (Connection conn : new Connection[] { from, to }) {
+            Statement stmt = conn.createStatement();
+            stmt.execute("CREATE TABLE T_ORDER_LINES (order_id INTEGER NOT NULL, line_no INTEGER NOT NULL, " +
+                    "CONSTRAINT pk_order_lines PRIMARY KEY (order_id, line_no))");
+            // the foreign key's columns are declared in another order than the key's
+            stmt.execute("CREATE TABLE T_SHIPMENTS (id INTEGER PRIMARY KEY, line_no INTEGER, order_id INTEGER, " +
+                    "CONSTRAINT fk_shipment_line FOREIGN KEY (order_id, line_no) REFERENCES T_ORDER_LINES (order_id, line_no))");
+            stmt.close();
+        }
+        Statement stmt = from.createStatement();
+        for (int order = 1; order <= 3; order++) {
+            for (int line = 1; line <= 3; line++) {
+                stmt.execute("INSERT INTO T_ORDER_LINES VALUES (" + order + ", " + line + ")");
+            }
+        }
+        stmt.execute("INSERT INTO T_SHIPMENTS VALUES (1, 2, 1)");
+        stmt.execute("INSERT INTO T_SHIPMENTS VALUES (2, 3, 2)");
+        stmt.execute("INSERT INTO T_SHIPMENTS VALUES (3, 1, 3)");
+        stmt.close();
+        Schema schema = new SchemaReader(from).read("PUBLIC");
+        Subset subset = new Subset();
+        subset.addDrivingTable("T_SHIPMENTS", "id IN (1, 2)", null);
+        DataCopier copier = new DataCopier(source, target);
+        copier.setSubset(subset);
+
+        assertEquals(2 + 2, copier.copy(schema));
+
+        // not every line of orders 1 and 2, nor every line 2 or 3
+        ResultSet rows = to.createStatement().executeQuery("SELECT order_id, line_no FROM T_ORDER_LINES ORDER BY order_id");
+        assertTrue(rows.next());
+        assertEquals(1, rows.getInt(1));
+        assertEquals(2, rows.getInt(2));
+        assertTrue(rows.next());
+        assertEquals(2, rows.getInt(1));
+        assertEquals(3, rows.getInt(2));
+        assertFalse(rows.next());
+        rows.close();
+    }
+
+    public void testSubsetSampleNeedsADialectWhichCanSample() throws SQLException {
+        Schema schema = new SchemaReader(from).read("PUBLIC");
+        Subset subset = new Subset();
+        subset.addDrivingTable("T_BOOKS", null, new Double(10));
+        DataCopier copier = new DataCopier(source, target);
+        copier.setSubset(subset);
+
+        try {
+            copier.copy(schema);
+            fail("GenericDialect has no sample clause");
+        } catch (SchemaException expected) {
+        }
+        assertEquals(0, count("T_BOOKS"));
+    }
+
+    public void testCopiesOneTable() throws SQLException {
+        Schema schema = new SchemaReader(from).read("PUBLIC");
+
+        assertEquals(2, new DataCopier(source, target).copy(schema.name(), schema.findTable("T_PUBLISHERS")));
+
+        assertEquals(2, count("T_PUBLISHERS"));
+        assertEquals(0, count("T_BOOKS"));
+    }
+
+    public void testRollsBackTheFailedBatch() throws SQLException {
+        Schema schema = new SchemaReader(from).read("PUBLIC");
+        to.createStatement().execute("INSERT INTO T_PUBLISHERS VALUES (2, 'Vintage')");
+        DataCopier copier = new DataCopier(source, target);
+        copier.setBatchSize(1);
+        try {
+            copier.copy(schema.name(), schema.findTable("T_PUBLISHERS"));
+            fail("Should have thrown SQLException");
+        } catch (SQLException expected) {
+            // the duplicate key
+        }
+        // the first row's batch was committed before the second failed
+        assertEquals(2, count("T_PUBLISHERS"));
+    }
+
+    private int count(String table) throws SQLException {
+        ResultSet rows = to.createStatement().executeQuery("SELECT COUNT(*) FROM " + table);
+        rows.next();
+        int count = rows.getInt(1);
+        rows.close();
+        return count;
+    }
+}
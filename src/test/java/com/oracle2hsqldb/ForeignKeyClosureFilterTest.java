@@ -0,0 +1,74 @@
+/*
+ * Schemamule, a library for automating database schema tasks
+ * Copyright (C) 2006, Moses M. Hohman and Rhett Sutphin
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St., 5th Floor, Boston, MA  02110-1301
+
+ * To contact the authors, send email to:
+ * { mmhohman OR rsutphin } AT sourceforge DOT net
+ */
+
+package com.oracle2hsqldb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class ForeignKeyClosureFilterTest extends TestCase {
+    private static final List<String> TABLES = Arrays.asList("T_COUNTRY", "T_CUSTOMER", "T_ORDER", "T_ORDER_LINE", "T_PRODUCT", "T_UNRELATED");
+
+    private List<Reference.Spec> foreignKeys = new ArrayList<Reference.Spec>();
+
+    protected void setUp() throws Exception {
+        foreignKeys.add(new Reference.Spec("T_CUSTOMER", "COUNTRY_ID", "FK_CUSTOMER_COUNTRY", "T_COUNTRY", "ID"));
+        foreignKeys.add(new Reference.Spec("T_ORDER", "CUSTOMER_ID", "FK_ORDER_CUSTOMER", "T_CUSTOMER", "ID"));
+        foreignKeys.add(new Reference.Spec("T_ORDER_LINE", "ORDER_ID", "FK_LINE_ORDER", "T_ORDER", "ID"));
+        foreignKeys.add(new Reference.Spec("T_ORDER_LINE", "PRODUCT_ID", "FK_LINE_PRODUCT", "T_PRODUCT", "ID"));
+        foreignKeys.add(new Reference.Spec("T_ORDER", "PARENT_ID", "FK_ORDER_OTHER_SCHEMA", null, null));
+    }
+
+    public void testIncludesParentsTransitively() {
+        ForeignKeyClosureFilter filter = new ForeignKeyClosureFilter(named("T_ORDER"), TABLES, foreignKeys, 0);
+        assertEquals(Arrays.asList("T_ORDER", "T_CUSTOMER", "T_COUNTRY"), new ArrayList<String>(filter.getIncludedTables()));
+        assertTrue(filter.accept(new Table("T_COUNTRY")));
+        assertFalse(filter.accept(new Table("T_ORDER_LINE")));
+    }
+
+    public void testIncludesChildrenUpToDepthWithTheirParents() {
+        ForeignKeyClosureFilter filter = new ForeignKeyClosureFilter(named("T_CUSTOMER"), TABLES, foreignKeys, 1);
+        assertEquals(Arrays.asList("T_CUSTOMER", "T_ORDER", "T_COUNTRY"), new ArrayList<String>(filter.getIncludedTables()));
+
+        filter = new ForeignKeyClosureFilter(named("T_CUSTOMER"), TABLES, foreignKeys, 2);
+        assertTrue(filter.accept(new Table("T_ORDER_LINE")));
+        assertTrue("parent of a child not included", filter.accept(new Table("T_PRODUCT")));
+        assertFalse(filter.accept(new Table("T_UNRELATED")));
+    }
+
+    public void testHandlesCycles() {
+        foreignKeys.add(new Reference.Spec("T_COUNTRY", "CAPITAL_CUSTOMER_ID", "FK_COUNTRY_CUSTOMER", "T_CUSTOMER", "ID"));
+        ForeignKeyClosureFilter filter = new ForeignKeyClosureFilter(named("T_COUNTRY"), TABLES, foreignKeys, 0);
+        assertEquals(Arrays.asList("T_COUNTRY", "T_CUSTOMER"), new ArrayList<String>(filter.getIncludedTables()));
+    }
+
+    private static TableFilter named(final String name) {
+        return new TableFilter() {
+            public boolean accept(Table table) {
+                return name.equals(table.name());
+            }
+        };
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Schemamule, a library for automating database schema tasks
+ * Copyright (C) 2006, Moses M. Hohman and Rhett Sutphin
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St., 5th Floor, Boston, MA  02110-1301
+
+ * To contact the authors, send email to:
+ * { mmhohman OR rsutphin } AT sourceforge DOT net
+ */
+
+package com.oracle2hsqldb;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class ForeignKeyGraphTest extends TestCase {
+    private Schema schema = new Schema("s");
+
+    protected void setUp() throws Exception {
+        for (String name : new String[] { "a", "b", "c", "d", "e", "f", "g" }) {
+            Table table = new Table(name);
+            table.addColumn(new Column("id", 1, 0, 0, false));
+            table.addColumn(new Column("parent_id", 1, 0, 0, true));
+            table.addColumn(new Column("other_id", 1, 0, 0, true));
+            schema.addTable(table);
+        }
+        schema.addTable(new View("v", "select * from c"));
+        reference("b", "parent_id", "a");
+        reference("c", "parent_id", "b");
+        reference("d", "parent_id", "a");
+        reference("d", "other_id", "a");
+        reference("e", "parent_id", "f");
+        reference("f", "parent_id", "e");
+        reference("f", "other_id", "a");
+        reference("g", "parent_id", "g");
+    }
+
+    public void testLevels() {
+        List<List<Table>> levels = new ForeignKeyGraph(schema).levels();
+        assertEquals(4, levels.size());
+        assertEquals("[a, g]", names(levels.get(0)));
+        assertEquals("[b, d, e, f]", names(levels.get(1)));
+        assertEquals("[c]", names(levels.get(2)));
+        assertEquals("views last", "[v]", names(levels.get(3)));
+    }
+
+    public void testTopologicalOrder() {
+        assertEquals("[a, g, b, d, e, f, c, v]", names(new ForeignKeyGraph(schema).topologicalOrder()));
+    }
+
+    public void testCycles() {
+        List<List<Table>> cycles = new ForeignKeyGraph(schema).getCycles();
+        assertEquals(2, cycles.size());
+        assertEquals("[e, f]", names(cycles.get(0)));
+        assertEquals("[g]", names(cycles.get(1)));
+    }
+
+    public void testParentsAndChildren() {
+        ForeignKeyGraph graph = new ForeignKeyGraph(schema);
+        assertEquals("[a]", names(graph.getParents(schema.findTable("d"))));
+        assertEquals("[b, d, f]", names(graph.getChildren(schema.findTable("a"))));
+        assertEquals("self reference", "[]", names(graph.getParents(schema.findTable("g"))));
+    }
+
+    public void testLongChainDoesNotOverflowStack() {
+        Schema chain = new Schema("chain");
+        Table previous = null;
+        for (int i = 0; i < 100000; i++) {
+            Table table = new Table("t" + i);
+            table.addColumn(new Column("id", 1, 0, 0, false));
+            if (previous != null) table.findColumn("id").reference(new Reference("fk" + i, previous.findColumn("id")));
+            chain.addTable(table);
+            previous = table;
+        }
+        ForeignKeyGraph graph = new ForeignKeyGraph(chain);
+        assertEquals(100000, graph.levels().size());
+        assertEquals(0, graph.getCycles().size());
+    }
+
+    private void reference(String table, String column, String parent) {
+        schema.findTable(table).findColumn(column).reference(new Reference("fk_" + table + "_" + column, schema.findTable(parent).findColumn("id")));
+    }
+
+    private static String names(List<Table> tables) {
+        List<String> names = new ArrayList<String>();
+        for (Table table : tables) {
+            names.add(table.name());
+        }
+        return names.toString();
+    }
+}
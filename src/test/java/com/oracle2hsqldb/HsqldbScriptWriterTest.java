@@ -0,0 +1,135 @@
+/*
+ * Schemamule, a library for automating database schema tasks
+ * Copyright (C) 2006, Moses M. Hohman and Rhett Sutphin
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St., 5th Floor, Boston, MA  02110-1301
+
+ * To contact the authors, send email to:
+ * { mmhohman OR rsutphin } AT sourceforge DOT net
+ */
+package com.oracle2hsqldb;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+
+import junit.framework.TestCase;
+
+import com.oracle2hsqldb.dialect.HSQLDialect;
+
+public class HsqldbScriptWriterTest extends TestCase {
+    private File directory;
+    private File database;
+
+    static {
+        try {
+            Class.forName("org.hsqldb.jdbcDriver");
+        } catch (Exception e) {
+            System.err.println("ERROR: failed to load HSQLDB JDBC driver");
+            e.printStackTrace(System.err);
+        }
+    }
+
+    protected void setUp() throws Exception {
+        directory = File.createTempFile("script", "");
+        directory.delete();
+        database = new File(directory, "db");
+    }
+
+    protected void tearDown() throws Exception {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    public void testWrittenDatabaseOpensAndReopens() throws Exception {
+        SchemaWriter writer = new SchemaWriter(new Configuration(true, false, true, new HSQLDialect()));
+        Table books = new Table("T_BOOKS", Table.Type.TABLE);
+        Column id = new Column("ID", Types.INTEGER, 0, 0, false);
+        books.addColumn(id);
+        PrimaryKey pk = new PrimaryKey();
+        pk.addColumn(id);
+        books.primaryKey(pk);
+        books.addColumn(new Column("TITLE", Types.VARCHAR, 20, 0, true, new DefaultValue("'\u00e9t\u00e9 \\ \u4e2d'", true)));
+
+        HsqldbScriptWriter script = new HsqldbScriptWriter(database, "sa", "secret");
+        try {
+            script.write(writer.write(new Schema("LIBRARY")));
+            script.write(writer.switchToSchema(new Schema("LIBRARY")));
+            script.write(writer.write(books));
+            script.write("CREATE VIEW V_BOOKS AS SELECT ID,\n\tTITLE\nFROM T_BOOKS");
+            script.write(writer.write(new Sequence("SEQ_BOOKS", new Long(60))));
+            script.finish();
+        } finally {
+            script.close();
+        }
+        assertTrue(new File(directory, "db.properties").exists());
+
+        Connection conn = connect();
+        try {
+            Statement stmt = conn.createStatement();
+            stmt.execute("INSERT INTO LIBRARY.T_BOOKS (ID) VALUES (1)");
+            ResultSet books1 = stmt.executeQuery("SELECT TITLE FROM LIBRARY.V_BOOKS");
+            assertTrue(books1.next());
+            assertEquals("\u00e9t\u00e9 \\ \u4e2d", books1.getString(1));
+            ResultSet next = stmt.executeQuery("SELECT NEXT VALUE FOR LIBRARY.SEQ_BOOKS FROM LIBRARY.T_BOOKS");
+            assertTrue(next.next());
+            assertEquals(60, next.getInt(1));
+            stmt.execute("SHUTDOWN");
+        } finally {
+            conn.close();
+        }
+
+        // HSQLDB rewrote the script on shutdown, which has to be readable again
+        conn = connect();
+        try {
+            ResultSet count = conn.createStatement().executeQuery("SELECT COUNT(*) FROM LIBRARY.T_BOOKS");
+            assertTrue(count.next());
+            assertEquals(1, count.getInt(1));
+            conn.createStatement().execute("SHUTDOWN");
+        } finally {
+            conn.close();
+        }
+    }
+
+    public void testRefusesToOverwriteDatabase() throws IOException {
+        directory.mkdirs();
+        new File(directory, "db.script").createNewFile();
+        try {
+            new HsqldbScriptWriter(database, "sa", "");
+            fail("Should have thrown IOException");
+        } catch (IOException expected) {
+            assertEquals("HSQLDB database " + database + " already exists", expected.getMessage());
+        }
+    }
+
+    public void testDigestIsHsqldbPasswordDigest() {
+        assertEquals("d41d8cd98f00b204e9800998ecf8427e", HsqldbScriptWriter.digest(""));
+        assertEquals("5ebe2294ecd0e0f08eab7690d2a6ee69", HsqldbScriptWriter.digest("secret"));
+    }
+
+    private Connection connect() throws SQLException {
+        return DriverManager.getConnection("jdbc:hsqldb:file:" + database.getPath() + ";ifexists=true", "sa", "secret");
+    }
+}
@@ -57,4 +57,16 @@ public class PrimaryKeyTest extends TestCase {
         pk.addColumn(c1);
         assertEquals(1, pk.columns().size());
     }
+
+    public void testSpecAddsColumnsInKeyOrder() {
+        Table t = new Table("T_ORDER_LINES", Table.Type.TABLE);
+        t.addColumn(new Column("LINE_NO", 1, 0, 0, false));
+        t.addColumn(new Column("ORDER_ID", 1, 0, 0, false));
+        PrimaryKey.Spec spec = new PrimaryKey.Spec("T_ORDER_LINES", "PK_ORDER_LINES");
+        spec.addColumnName("LINE_NO", 2);
+        spec.addColumnName("ORDER_ID", 1);
+        spec.addPrimaryKey(t);
+        assertEquals("ORDER_ID", t.primaryKey().columns().get(0).name());
+        assertEquals("LINE_NO", t.primaryKey().columns().get(1).name());
+    }
 }
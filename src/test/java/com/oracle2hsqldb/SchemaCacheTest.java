@@ -0,0 +1,169 @@
+/*
+ * Schemamule, a library for automating database schema tasks
+ * Copyright (C) 2006, Moses M. Hohman and Rhett Sutphin
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St., 5th Floor, Boston, MA  02110-1301
+
+ * To contact the authors, send email to:
+ * { mmhohman OR rsutphin } AT sourceforge DOT net
+ */
+
+package com.oracle2hsqldb;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import junit.framework.TestCase;
+
+import org.springframework.util.MultiValueMap;
+
+import com.oracle2hsqldb.dialect.GenericDialect;
+
+public class SchemaCacheTest extends TestCase {
+    private Connection conn;
+    private File file;
+    private TimedDialect dialect = new TimedDialect();
+
+    protected void setUp() throws Exception {
+        Class.forName("org.hsqldb.jdbcDriver");
+        conn = DriverManager.getConnection("jdbc:hsqldb:mem:cachetest", "sa", "");
+        execute("CREATE TABLE T_LIBRARIES (id INTEGER PRIMARY KEY, name VARCHAR(30))");
+        execute("CREATE TABLE T_BOOKS (id INTEGER PRIMARY KEY, library_id INTEGER, " +
+                "CONSTRAINT fk_book_library FOREIGN KEY (library_id) REFERENCES T_LIBRARIES)");
+        file = File.createTempFile("schemacache", ".schema");
+        file.delete();
+    }
+
+    protected void tearDown() throws Exception {
+        execute("DROP SCHEMA PUBLIC CASCADE");
+        conn.close();
+        file.delete();
+    }
+
+    public void testStoresSchemaReadWithoutCache() throws SQLException {
+        Schema schema = read();
+
+        assertTrue("cache not written", file.exists());
+        assertEquals(2, schema.tables().size());
+        assertEquals(2, dialect.columnsReadFor.size());
+    }
+
+    public void testDoesNotRereadUnchangedTables() throws SQLException {
+        read();
+        dialect.columnsReadFor.clear();
+        Schema schema = read();
+
+        assertEquals("tables re-read", 0, dialect.columnsReadFor.size());
+        assertEquals(2, schema.tables().size());
+        Column libraryId = schema.findTable("T_BOOKS").findColumn("LIBRARY_ID");
+        assertSame(schema.findTable("T_LIBRARIES"), libraryId.reference().refersTo().owner());
+    }
+
+    public void testRereadsChangedTablesAndRewiresReferences() throws SQLException {
+        read();
+        dialect.columnsReadFor.clear();
+        execute("ALTER TABLE T_LIBRARIES ADD COLUMN city VARCHAR(20)");
+        dialect.changed("T_LIBRARIES");
+        Schema schema = read();
+
+        assertEquals("[T_LIBRARIES]", dialect.columnsReadFor.toString());
+        Table libraries = schema.findTable("T_LIBRARIES");
+        assertEquals(3, libraries.columns().size());
+        assertSame(libraries, schema.findTable("T_BOOKS").findColumn("LIBRARY_ID").reference().refersTo().owner());
+    }
+
+    public void testReferencesFromRereadTablesAreWired() throws SQLException {
+        read();
+        dialect.changed("T_BOOKS");
+        Schema schema = read();
+
+        Reference reference = schema.findTable("T_BOOKS").findColumn("LIBRARY_ID").reference();
+        assertNotNull("reference not wired", reference);
+        assertSame(schema.findTable("T_LIBRARIES"), reference.refersTo().owner());
+    }
+
+    public void testAddsNewAndRemovesDroppedTables() throws SQLException {
+        read();
+        execute("DROP TABLE T_BOOKS");
+        execute("CREATE TABLE T_AUTHORS (id INTEGER PRIMARY KEY)");
+        Schema schema = read();
+
+        assertNull(schema.findTable("T_BOOKS"));
+        assertNotNull(schema.findTable("T_AUTHORS"));
+        assertEquals(1, schema.findTable("T_AUTHORS").columns().size());
+    }
+
+    public void testNotUsedWhenDialectCannotTellWhatChanged() throws SQLException {
+        SchemaReader reader = new SchemaReader(new Configuration(true, true, false, new GenericDialect()), conn);
+        reader.setCache(new SchemaCache(file));
+        reader.read(null);
+
+        assertFalse("cache written", file.exists());
+    }
+
+    private Schema read() throws SQLException {
+        SchemaReader reader = new SchemaReader(new Configuration(true, true, false, dialect), conn);
+        reader.setCache(new SchemaCache(file));
+        return reader.read(null);
+    }
+
+    private void execute(String sql) throws SQLException {
+        Statement statement = conn.createStatement();
+        try {
+            statement.execute(sql);
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Pretends every table's DDL last changed when the test says it did.
+     */
+    private static class TimedDialect extends GenericDialect {
+        private Map<String, Date> changes = new HashMap<String, Date>();
+        private List<String> columnsReadFor = new ArrayList<String>();
+
+        public void changed(String tableName) {
+            changes.put(tableName, new Date(System.currentTimeMillis()));
+        }
+
+        public Map<String, Date> getLastDdlTimes(DataSource dataSource, String schemaName, TableFilter filter) throws SQLException {
+            Map<String, Date> times = new LinkedHashMap<String, Date>();
+            for (Table.Spec table : getTables(dataSource, schemaName, filter)) {
+                Date changed = changes.get(table.getTableName());
+                times.put(table.getTableName(), changed == null ? new Date(0) : changed);
+            }
+            return times;
+        }
+
+        public MultiValueMap<String, Column.Spec> getColumns(DataSource dataSource, String schemaName, List<Table.Spec> tables) throws SQLException {
+            for (Table.Spec table : tables) {
+                columnsReadFor.add(table.getTableName());
+            }
+            return super.getColumns(dataSource, schemaName, tables);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Schemamule, a library for automating database schema tasks
+ * Copyright (C) 2006, Moses M. Hohman and Rhett Sutphin
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St., 5th Floor, Boston, MA  02110-1301
+
+ * To contact the authors, send email to:
+ * { mmhohman OR rsutphin } AT sourceforge DOT net
+ */
+
+package com.oracle2hsqldb;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+/**
+ * Measures the heap a synthetic 500,000 column schema (25,000 tables of 20 columns, each with a primary
+ * key and two indexes) takes while it's read and once it's assembled, with the names copied per row the
+ * way a JDBC driver hands them out.  Compares reading without and with the {@link NamePool}, releasing
+ * the specs as they're attached and {@link Schema#compact() compacting}.
+ * <p>
+ * Run it by hand with a roomy heap: <code>java -Xmx2g -cp ... com.oracle2hsqldb.SchemaHeapBenchmark</code>
+ */
+public class SchemaHeapBenchmark {
+    private static final int TABLES = 25000;
+    private static final int COLUMNS_PER_TABLE = 20;
+
+    // keeps whatever is still referenced reachable for the measurements, whatever the JIT makes of the locals
+    private static Object[] retained;
+
+    public static void main(String[] args) {
+        run(false);
+        run(true);
+    }
+
+    private static void run(boolean compact) {
+        long base = usedHeap();
+        NamePool names = compact ? new NamePool() : null;
+
+        List<Table.Spec> tables = new ArrayList<Table.Spec>();
+        MultiValueMap<String, Column.Spec> columns = new LinkedMultiValueMap<String, Column.Spec>();
+        List<PrimaryKey.Spec> keys = new ArrayList<PrimaryKey.Spec>();
+        List<Index.Spec> indicies = new ArrayList<Index.Spec>();
+        for (int t = 0; t < TABLES; t++) {
+            tables.add(new Table.Spec(name(names, "T_" + t), "TABLE"));
+            for (int c = 0; c < COLUMNS_PER_TABLE; c++) {
+                String tableName = name(names, "T_" + t);
+                columns.add(tableName, new Column.Spec(tableName, new Column(name(names, "C_" + c), Types.VARCHAR, 30, 0, c > 0)));
+            }
+            PrimaryKey.Spec key = new PrimaryKey.Spec(name(names, "T_" + t), name(names, "PK_" + t));
+            key.addColumnName(name(names, "C_0"));
+            keys.add(key);
+            for (int c = 1; c <= 2; c++) {
+                indicies.add(new Index.Spec(name(names, "T_" + t), name(names, "C_" + c), name(names, "IDX_" + t + "_" + c), false));
+            }
+        }
+        retained = new Object[] { tables, columns, keys, indicies, names };
+        long read = usedHeap();
+
+        Schema schema = new Schema("BENCH");
+        for (Table.Spec spec : tables) {
+            schema.addTable(spec.getTable());
+        }
+        for (Table.Spec spec : tables) {
+            List<Column.Spec> tableColumns = compact ? columns.remove(spec.getTableName()) : columns.get(spec.getTableName());
+            Table table = schema.findTable(spec.getTableName());
+            for (Column.Spec column : tableColumns) {
+                table.addColumn(column.getColumn());
+            }
+        }
+        if (compact) columns = null;
+        for (PrimaryKey.Spec key : keys) {
+            key.addPrimaryKey(schema.findTable(key.getTableName()));
+        }
+        if (compact) keys = null;
+        for (Index.Spec spec : indicies) {
+            Table table = schema.findTable(spec.getTableName());
+            Index index = table.index(spec.getIndexName());
+            if (index == null) index = new Index(spec.getIndexName(), spec.isUnique());
+            table.findColumn(spec.getColumnName()).indexedBy(index);
+        }
+        if (compact) {
+            indicies = null;
+            names = null;
+            schema.compact();
+        }
+        retained = new Object[] { tables, columns, keys, indicies, names, schema };
+        long peak = usedHeap();
+        retained = new Object[] { schema };
+        long model = usedHeap();
+        retained = null;
+
+        System.out.println((compact ? "compact" : "plain  ")
+            + "  specs: " + mb(read - base)
+            + "  specs + model: " + mb(peak - base)
+            + "  model: " + mb(model - base)
+            + "  (" + schema.tables().size() + " tables)");
+    }
+
+    private static String name(NamePool names, String name) {
+        // a fresh copy, like a driver returns for every row
+        String copy = new String(name.toCharArray());
+        return names == null ? copy : names.intern(copy);
+    }
+
+    private static String mb(long bytes) {
+        return (bytes / (1024 * 1024)) + "MB";
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -24,8 +24,11 @@ package com.oracle2hsqldb;
 
 import junit.framework.TestCase;
 
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
@@ -37,6 +40,8 @@ import com.oracle2hsqldb.Schema;
 import com.oracle2hsqldb.SchemaReader;
 import com.oracle2hsqldb.Table;
 import com.oracle2hsqldb.Index;
+import com.oracle2hsqldb.dialect.GenericDialect;
+import com.oracle2hsqldb.dialect.HSQLDialect;
 
 /**
  * @author Moses Hohman
@@ -239,6 +244,105 @@ public class SchemaReaderTest extends TestCase {
         assertEquals("wrong last column", lastName, uniqueKey.columns().get(1));
     }
 
+    public void testCompositePrimaryKeyKeepsKeyOrderThroughToHsqldbIndex() throws SQLException {
+        Connection source = DriverManager.getConnection("jdbc:hsqldb:mem:orderlines_src", "sa", "");
+        Connection target = DriverManager.getConnection("jdbc:hsqldb:mem:orderlines_dst", "sa", "");
+        try {
+            // metadata returns key columns by name, so LINE_NO would come first without KEY_SEQ
+            source.createStatement().execute("CREATE TABLE t_order_lines (" +
+                    "line_no INTEGER NOT NULL, " +
+                    "order_id INTEGER NOT NULL, " +
+                    "CONSTRAINT pk_order_lines PRIMARY KEY (order_id, line_no)" +
+                ")");
+            Table lines = new SchemaReader(source).read("PUBLIC").findTable("T_ORDER_LINES");
+            assertEquals("ORDER_ID", lines.primaryKey().columns().get(0).name());
+            assertEquals("LINE_NO", lines.primaryKey().columns().get(1).name());
+
+            SchemaWriter writer = new SchemaWriter(new Configuration(true, false, false, new HSQLDialect()));
+            Statement stmt = target.createStatement();
+            stmt.execute(writer.write(lines));
+            ResultSet plan = stmt.executeQuery("EXPLAIN PLAN FOR SELECT * FROM t_order_lines WHERE order_id = 1");
+            StringBuilder text = new StringBuilder();
+            while (plan.next()) {
+                text.append(plan.getString(1)).append("\n");
+            }
+            assertTrue("lookup by leading key column does not use the key index:\n" + text, text.indexOf("access=INDEX PRED") >= 0);
+        } finally {
+            source.createStatement().execute("SHUTDOWN");
+            target.createStatement().execute("SHUTDOWN");
+        }
+    }
+
+    public void testDropsForeignKeyIndexWhenColumnIsAlreadyIndexed() {
+        // hsqldb indexes foreign key columns itself, so the synthesized FK_BOOK_LIBRARY index is redundant
+        Table t_books = schema.findTable(BOOK_TABLE_NAME);
+        assertEquals("number of indexes wrong", 1, t_books.indicies().size());
+        assertNull(t_books.index("FK_BOOK_LIBRARY"));
+        assertEquals("LIBRARY_ID", t_books.indicies().get(0).columns().get(0).name());
+    }
+
+    public void testDropsIndexesLeadingAnotherIndexOrThePrimaryKey() throws SQLException {
+        Connection source = DriverManager.getConnection("jdbc:hsqldb:mem:coverage", "sa", "");
+        try {
+            Statement stmt = source.createStatement();
+            stmt.execute("CREATE TABLE t_order_lines (" +
+                    "order_id INTEGER NOT NULL, " +
+                    "line_no INTEGER NOT NULL, " +
+                    "product_id INTEGER, " +
+                    "shipped DATE, " +
+                    "CONSTRAINT pk_order_lines PRIMARY KEY (order_id, line_no)" +
+                ")");
+            stmt.execute("CREATE INDEX ix_order ON t_order_lines (order_id)");
+            stmt.execute("CREATE INDEX ix_product ON t_order_lines (product_id)");
+            stmt.execute("CREATE INDEX ix_product_shipped ON t_order_lines (product_id, shipped)");
+            stmt.execute("CREATE INDEX ix_shipped ON t_order_lines (shipped)");
+            Table lines = new SchemaReader(source).read("PUBLIC").findTable("T_ORDER_LINES");
+
+            assertNull("leads the primary key", lines.index("IX_ORDER"));
+            assertNull("leads another index", lines.index("IX_PRODUCT"));
+            assertNotNull(lines.index("IX_PRODUCT_SHIPPED"));
+            assertNotNull("only a suffix of another index", lines.index("IX_SHIPPED"));
+        } finally {
+            source.createStatement().execute("SHUTDOWN");
+        }
+    }
+
+    public void testKeepsIndexOnPrimaryKeyColumnsInAnotherOrderAsNonUnique() throws SQLException {
+        Connection source = DriverManager.getConnection("jdbc:hsqldb:mem:reordered_src", "sa", "");
+        Connection target = DriverManager.getConnection("jdbc:hsqldb:mem:reordered_dst", "sa", "");
+        try {
+            Statement stmt = source.createStatement();
+            stmt.execute("CREATE TABLE t_order_lines (" +
+                    "order_id INTEGER NOT NULL, " +
+                    "line_no INTEGER NOT NULL, " +
+                    "CONSTRAINT pk_order_lines PRIMARY KEY (order_id, line_no)" +
+                ")");
+            stmt.execute("CREATE UNIQUE INDEX ix_line_order ON t_order_lines (line_no, order_id)");
+            Table lines = new SchemaReader(source).read("PUBLIC").findTable("T_ORDER_LINES");
+
+            assertEquals("only the key's own index is dropped", 1, lines.indicies().size());
+            Index index = lines.indicies().get(0);
+            assertFalse("the key already keeps its columns unique", index.isUnique());
+            assertEquals("LINE_NO", index.columns().get(0).name());
+            assertEquals("ORDER_ID", index.columns().get(1).name());
+
+            // HSQLDB rejects a unique constraint on the key's columns in another order
+            SchemaWriter writer = new SchemaWriter(new Configuration(true, false, false, new HSQLDialect()));
+            Statement create = target.createStatement();
+            create.execute(writer.write(lines));
+            create.execute(writer.write(index));
+            ResultSet plan = create.executeQuery("EXPLAIN PLAN FOR SELECT * FROM t_order_lines WHERE line_no = 1");
+            StringBuilder text = new StringBuilder();
+            while (plan.next()) {
+                text.append(plan.getString(1)).append("\n");
+            }
+            assertTrue("lookup by leading index column does not use the index:\n" + text, text.indexOf("IX_LINE_ORDER") >= 0);
+        } finally {
+            source.createStatement().execute("SHUTDOWN");
+            target.createStatement().execute("SHUTDOWN");
+        }
+    }
+
     public void testDoesNotCreateUniqueKeyForPrimaryKey() {
         Table t_books = schema.findTable(BOOK_TABLE_NAME);
         for (Index i : t_books.indicies()) {
@@ -261,4 +365,67 @@ public class SchemaReaderTest extends TestCase {
         assertTrue("default value not string", titleColumn.defaultValue().isString());
         assertEquals("'unknown'", titleColumn.defaultValue().getValue());
     }
-}
\ No newline at end of file
+
+    public void testPerTableMetaDataReadsSameSchemaAsBulk() throws SQLException {
+        GenericDialect dialect = new GenericDialect();
+        dialect.setBulkMetaData(false);
+        Schema perTable = new SchemaReader(new Configuration(true, true, false, dialect), conn).read(null);
+
+        assertSameSchema(schema, perTable);
+    }
+
+    public void testConcurrentReadReadsSameSchemaAsSequential() throws SQLException {
+        SchemaReader reader = new SchemaReader(Configuration.DEFAULT_CONFIG, new DriverManagerDataSource("jdbc:hsqldb:.", "sa", ""));
+        reader.setThreads(3);
+        Schema concurrent = reader.read(null);
+
+        assertSameSchema(schema, concurrent);
+    }
+
+    public void testCloseOverForeignKeysReadsReferencedTables() throws SQLException {
+        SchemaReader reader = new SchemaReader(conn);
+        TableFilter books = new TableFilter() {
+            public boolean accept(Table table) {
+                return BOOK_TABLE_NAME.equals(table.name());
+            }
+        };
+        Schema subset = reader.read(null, reader.closeOverForeignKeys(null, books, 0));
+
+        assertEquals("number of tables wrong", 2, subset.tables().size());
+        assertNotNull(subset.findTable(LIBRARY_TABLE_NAME));
+        assertEquals("FK_BOOK_LIBRARY", subset.findTable(BOOK_TABLE_NAME).findColumn("LIBRARY_ID").reference().name());
+    }
+
+    public void testStreamingReadPassesOnCompleteTables() throws SQLException {
+        final Schema streamed = new Schema(null);
+        SchemaReader reader = new SchemaReader(conn);
+        reader.setChunkSize(1);
+        reader.read(null, AllTablesFilter.INSTANCE, new SchemaListener() {
+            public void tableRead(Table table) {
+                assertFalse(table.name() + " has no columns", table.columns().isEmpty());
+                streamed.addTable(table);
+            }
+
+            public void sequenceRead(Sequence sequence) {
+                streamed.addSequence(sequence);
+            }
+        });
+
+        // T_BOOKS is read before the T_LIBRARIES it references, which is wired once it's read
+        assertSameSchema(schema, streamed);
+        assertSame(streamed.findTable(LIBRARY_TABLE_NAME), streamed.findTable(BOOK_TABLE_NAME).findColumn("LIBRARY_ID").reference().refersTo().owner());
+    }
+
+    private void assertSameSchema(Schema expected, Schema actual) {
+        assertEquals("number of tables wrong", expected.tables().size(), actual.tables().size());
+        for (int i = 0; i < expected.tables().size(); i++) {
+            Table table = expected.tables().get(i);
+            Table other = actual.tables().get(i);
+            assertEquals("table order wrong", table.name(), other.name());
+            assertEquals(table.name() + " columns wrong", table.columns().size(), other.columns().size());
+            assertEquals(table.name() + " indicies wrong", table.indicies().size(), other.indicies().size());
+            assertEquals(table.name() + " primary key wrong", String.valueOf(table.primaryKey()), String.valueOf(other.primaryKey()));
+        }
+        assertEquals("FK_BOOK_LIBRARY", actual.findTable(BOOK_TABLE_NAME).findColumn("LIBRARY_ID").reference().name());
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Schemamule, a library for automating database schema tasks
+ * Copyright (C) 2006, Moses M. Hohman and Rhett Sutphin
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St., 5th Floor, Boston, MA  02110-1301
+
+ * To contact the authors, send email to:
+ * { mmhohman OR rsutphin } AT sourceforge DOT net
+ */
+
+package com.oracle2hsqldb;
+
+import java.sql.Types;
+
+/**
+ * Times assembling ever larger schemas the way {@link SchemaReader} does, looking up every column's
+ * table, every primary key and index column and every reference by name.  With hashed lookups the
+ * time per column should stay flat as the schema grows.
+ * <p>
+ * Run it by hand: <code>java -cp ... com.oracle2hsqldb.SchemaScalingBenchmark [columns per table]</code>
+ */
+public class SchemaScalingBenchmark {
+    private static final int[] COLUMN_COUNTS = { 1000, 10000, 100000 };
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int columnsPerTable = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        // warm up
+        assemble(10000, columnsPerTable);
+
+        System.out.println("columns\ttables\tms\tns/column");
+        for (int columnCount : COLUMN_COUNTS) {
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                assemble(columnCount, columnsPerTable);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            System.out.println(columnCount + "\t" + (columnCount / columnsPerTable) + "\t"
+                + (best / 1000000) + "\t" + (best / columnCount));
+        }
+    }
+
+    static Schema assemble(int columnCount, int columnsPerTable) {
+        int tableCount = columnCount / columnsPerTable;
+        Schema schema = new Schema("BENCH");
+        for (int t = 0; t < tableCount; t++) {
+            schema.addTable(new Table(tableName(t)));
+        }
+        for (int t = 0; t < tableCount; t++) {
+            for (int c = 0; c < columnsPerTable; c++) {
+                schema.findTable(tableName(t)).addColumn(new Column(columnName(c), Types.VARCHAR, 30, 0, c > 0));
+            }
+        }
+        for (int t = 0; t < tableCount; t++) {
+            Table table = schema.findTable(tableName(t));
+            PrimaryKey key = new PrimaryKey();
+            key.name("PK_" + t);
+            key.addColumn(table.findColumn(columnName(0)));
+            table.primaryKey(key);
+        }
+        for (int t = 0; t < tableCount; t++) {
+            Table table = schema.findTable(tableName(t));
+            for (int c = 1; c < columnsPerTable; c += 2) {
+                String indexName = "IDX_" + t + "_" + c;
+                Index index = table.index(indexName);
+                if (index == null) index = new Index(indexName, false);
+                table.findColumn(columnName(c)).indexedBy(index);
+            }
+        }
+        for (int t = 1; t < tableCount; t++) {
+            Column primaryColumn = schema.findTable(tableName(t - 1)).findColumn(columnName(0));
+            schema.findTable(tableName(t)).findColumn(columnName(1)).reference(new Reference("FK_" + t, primaryColumn));
+        }
+        return schema;
+    }
+
+    private static String tableName(int t) {
+        return "T_" + t;
+    }
+
+    private static String columnName(int c) {
+        return "C_" + c;
+    }
+}
@@ -37,4 +37,89 @@ public class SchemaTest extends TestCase {
         schema.addTable(t);
         assertEquals(t, schema.findTable("t_t"));
     }
+
+    public void testFreezeCopiesTheWholeModel() {
+        Schema schema = createLibrarySchema();
+        Schema frozen = schema.freeze();
+
+        assertNotSame(schema, frozen);
+        assertTrue(frozen.isFrozen());
+        assertSame(frozen, frozen.freeze());
+        assertEquals(3, frozen.tables().size());
+        Table libraries = frozen.findTable("t_libraries");
+        assertNotSame(schema.findTable("t_libraries"), libraries);
+        assertTrue(libraries.findColumn("id").isPrimaryKey());
+        assertTrue(libraries.findColumn("name").isUnique());
+        assertEquals("statistics lost", new Long(4800), libraries.estimatedSize());
+        assertSame(libraries.findColumn("name"), libraries.index("uk_name").columns().get(0));
+        assertSame("reference not to the frozen copy", libraries.findColumn("id"),
+            frozen.findTable("t_books").findColumn("library_id").reference().refersTo());
+        assertTrue("view lost", frozen.findTable("v_books") instanceof View);
+        assertEquals("select * from t_books", ((View) frozen.findTable("v_books")).text());
+        assertEquals(1, frozen.sequences().size());
+    }
+
+    public void testFrozenSchemaRefusesChanges() {
+        Schema frozen = createLibrarySchema().freeze();
+        Table libraries = frozen.findTable("t_libraries");
+        Column name = libraries.findColumn("name");
+
+        assertFrozen(new Runnable() { public void run() { createLibrarySchema().freeze().addTable(new Table("t_other")); } });
+        assertFrozen(new Runnable() { public void run() { createLibrarySchema().freeze().findTable("t_books").addColumn(new Column("x", 1, 0, 0, true)); } });
+        assertFrozen(new Runnable() { public void run() { createLibrarySchema().freeze().findTable("t_books").addIndex(new Index("x", false)); } });
+        try {
+            name.reference(null);
+            fail("column changed");
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            libraries.index("uk_name").columns().add(libraries.findColumn("id"));
+            fail("index columns changed");
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            libraries.primaryKey().addColumn(name);
+            fail("primary key changed");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    public void testFreezingLeavesOriginalMutable() {
+        Schema schema = createLibrarySchema();
+        schema.freeze();
+        schema.addTable(new Table("t_other"));
+        schema.findTable("t_books").addColumn(new Column("x", 1, 0, 0, true));
+        assertEquals(4, schema.tables().size());
+    }
+
+    private static void assertFrozen(Runnable change) {
+        try {
+            change.run();
+            fail("frozen schema changed");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    private static Schema createLibrarySchema() {
+        Schema schema = new Schema("hi");
+        Table libraries = new Table("t_libraries");
+        Column id = new Column("id", 1, 0, 0, false);
+        libraries.addColumn(id);
+        libraries.addColumn(new Column("name", 1, 0, 0, true));
+        libraries.statistics(new Long(120), new Integer(40));
+        PrimaryKey key = new PrimaryKey();
+        key.name("pk_libraries");
+        key.addColumn(id);
+        libraries.primaryKey(key);
+        libraries.findColumn("name").indexedBy(new Index("uk_name", true));
+        schema.addTable(libraries);
+
+        Table books = new Table("t_books");
+        books.addColumn(new Column("library_id", 1, 0, 0, false));
+        books.findColumn("library_id").reference(new Reference("fk_book_library", id));
+        schema.addTable(books);
+        schema.addTable(new View("v_books", "select * from t_books"));
+        schema.addSequence(new Sequence("seq_books", new Long(1)));
+        return schema;
+    }
 }
@@ -175,6 +175,77 @@ public class SchemaWriterTest extends TestCase {
                 ")", writer.write(t));
     }
 
+    public void testWriteTableWithCompositePrimaryKeyInKeyOrder() {
+        Table t = new Table("T_ORDER_LINES", Table.Type.TABLE);
+        Column lineNo = new Column("LINE_NO", Types.INTEGER, 0, 0, false);
+        Column orderId = new Column("ORDER_ID", Types.INTEGER, 0, 0, false);
+        t.addColumn(lineNo);
+        t.addColumn(orderId);
+        PrimaryKey pk = new PrimaryKey();
+        pk.name("PK_ORDER_LINES");
+        pk.addColumn(orderId);
+        pk.addColumn(lineNo);
+        t.primaryKey(pk);
+        Index uniqueConstraint = new Index("UK_LINE", true);
+        lineNo.indexedBy(uniqueConstraint);
+        assertEquals("CREATE TABLE T_ORDER_LINES (\n" +
+                "\tLINE_NO INTEGER NOT NULL,\n" +
+                "\tORDER_ID INTEGER NOT NULL,\n" +
+                "\tCONSTRAINT PK_ORDER_LINES PRIMARY KEY (ORDER_ID, LINE_NO),\n" +
+                "\tCONSTRAINT UK_LINE UNIQUE (LINE_NO)\n" +
+                ")", writer.write(t));
+    }
+
+    public void testWriteUnnamedCompositePrimaryKey() {
+        Table t = new Table("T_ORDER_LINES", Table.Type.TABLE);
+        Column orderId = new Column("ORDER_ID", Types.INTEGER, 0, 0, false);
+        Column lineNo = new Column("LINE_NO", Types.INTEGER, 0, 0, false);
+        t.addColumn(orderId);
+        t.addColumn(lineNo);
+        PrimaryKey pk = new PrimaryKey();
+        pk.addColumn(orderId);
+        pk.addColumn(lineNo);
+        t.primaryKey(pk);
+        assertEquals("CREATE TABLE T_ORDER_LINES (\n" +
+                "\tORDER_ID INTEGER NOT NULL,\n" +
+                "\tLINE_NO INTEGER NOT NULL,\n" +
+                "\tPRIMARY KEY (ORDER_ID, LINE_NO)\n" +
+                ")", writer.write(t));
+    }
+
+    public void testWriteTableWithOnlyNonUniqueIndexHasNoTrailingComma() {
+        Table t = new Table("T_BLAH", Table.Type.TABLE);
+        Column name = new Column("NAME", Types.VARCHAR, 20, 0, true);
+        t.addColumn(name);
+        name.indexedBy(new Index("IX_NAME", false));
+        assertEquals("CREATE TABLE T_BLAH (\n" +
+                "\tNAME VARCHAR2(20)\n" +
+                ")", writer.write(t));
+    }
+
+    public void testWritesTablesAboveThresholdAsCachedTables() {
+        writer = new SchemaWriter(new Configuration(true, false, false, new HSQLDialect()));
+        writer.setCachedTableThreshold(1000);
+        Table big = new Table("T_BIG", Table.Type.TABLE);
+        big.statistics(new Long(11), new Integer(100));
+        Table small = new Table("T_SMALL", Table.Type.TABLE);
+        small.statistics(new Long(10), new Integer(100));
+        Table unanalyzed = new Table("T_UNANALYZED", Table.Type.TABLE);
+
+        assertTrue(writer.isCached(big));
+        assertFalse("not above the threshold", writer.isCached(small));
+        assertFalse("no statistics", writer.isCached(unanalyzed));
+        big.addColumn(new Column("ID", Types.INTEGER, 0, 0, true));
+        assertEquals("CREATE CACHED TABLE T_BIG (\n\tID INTEGER\n)", writer.write(big));
+    }
+
+    public void testNoCachedTablesWithoutDialectSupport() {
+        writer.setCachedTableThreshold(0);
+        Table big = new Table("T_BIG", Table.Type.TABLE);
+        big.statistics(new Long(1000000), new Integer(100));
+        assertFalse(writer.isCached(big));
+    }
+
     public void testWriteColumnSize() {
         Column column = new Column("NAME", Types.VARCHAR, 30, 0, true);
         assertEquals("NAME VARCHAR2(30)", writer.write(column));
@@ -245,4 +316,19 @@ public class SchemaWriterTest extends TestCase {
                 "\tNAME VARCHAR(50) DEFAULT 'hokey'\n" +
                 ")", writer.write(table));
     }
-}
\ No newline at end of file
+
+    public void testRenderAppendsToExistingOutput() throws Exception {
+        Table table = new Table("T_BLAH", Table.Type.TABLE);
+        Column name = new Column("NAME", Types.VARCHAR, 20, 0, true);
+        table.addColumn(name);
+        Index index = new Index("IX_NAME", false);
+        name.indexedBy(index);
+
+        StringBuilder out = new StringBuilder("-- ddl\n");
+        writer.render(table, out).append(";\n");
+        writer.render(index, out).append(";\n");
+        writer.render(new Index("UK_NAME", true), out);
+        assertEquals("-- ddl\n" + writer.write(table) + ";\n" + writer.write(index) + ";\n", out.toString());
+        assertEquals("CREATE INDEX IX_NAME ON T_BLAH(NAME)", writer.write(index));
+    }
+}
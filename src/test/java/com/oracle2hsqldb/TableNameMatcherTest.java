@@ -0,0 +1,104 @@
+/*
+ * Schemamule, a library for automating database schema tasks
+ * Copyright (C) 2006, Moses M. Hohman and Rhett Sutphin
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St., 5th Floor, Boston, MA  02110-1301
+
+ * To contact the authors, send email to:
+ * { mmhohman OR rsutphin } AT sourceforge DOT net
+ */
+
+package com.oracle2hsqldb;
+
+import junit.framework.TestCase;
+
+public class TableNameMatcherTest extends TestCase {
+    private TableNameMatcher matcher = new TableNameMatcher();
+
+    public void testMatchesNames() {
+        matcher.addName("T_BOOKS");
+        assertTrue(matcher.matches("T_BOOKS"));
+        assertFalse(matcher.matches("T_BOOKS_2"));
+    }
+
+    public void testMatchesPrefixGlobs() {
+        matcher.addGlob("T_BOOK*");
+        matcher.addGlob("T_LIB*");
+        assertTrue(matcher.matches("T_BOOK"));
+        assertTrue(matcher.matches("T_BOOKS"));
+        assertTrue(matcher.matches("T_LIBRARIES"));
+        assertFalse(matcher.matches("T_BOO"));
+        assertFalse(matcher.matches("X_BOOKS"));
+    }
+
+    public void testMatchesGlobWithInnerWildcards() {
+        matcher.addGlob("T_?_*_HIST");
+        assertTrue(matcher.matches("T_A_ORDER_HIST"));
+        assertFalse(matcher.matches("T_AB_ORDER_HIST"));
+        assertFalse(matcher.matches("T_A_ORDER_HIST2"));
+    }
+
+    public void testGlobLiteralsAreNotRegexes() {
+        matcher.addGlob("T.$*X");
+        assertTrue(matcher.matches("T.$ANYX"));
+        assertFalse(matcher.matches("TA$ANYX"));
+    }
+
+    public void testMatchesRegexes() {
+        matcher.addRegex("T_(BOOK|LIBRARY)");
+        matcher.addRegex("V_.*");
+        assertTrue(matcher.matches("T_BOOK"));
+        assertTrue(matcher.matches("V_FOLKS"));
+        assertFalse(matcher.matches("T_BOOKS"));
+    }
+
+    public void testMatchesManyPatterns() {
+        for (int i = 0; i < 5000; i++) {
+            matcher.addGlob("T_" + i + "_*");
+            matcher.addRegex("X_" + i + "_[0-9]+");
+        }
+        assertTrue(matcher.matches("T_4999_ANYTHING"));
+        assertTrue(matcher.matches("X_123_456"));
+        assertFalse(matcher.matches("X_123_ABC"));
+    }
+
+    public void testEmpty() {
+        assertTrue(matcher.isEmpty());
+        matcher.addRegex("T.*");
+        assertFalse(matcher.isEmpty());
+    }
+
+    public void testLiteralPrefixes() {
+        matcher.addName("T_A");
+        matcher.addGlob("T_ORDER*");
+        matcher.addGlob("T_LINE_?");
+        matcher.addRegex("T_AUDIT_[0-9]+");
+        assertEquals("[T_ORDER, T_LINE_, T_AUDIT_]", matcher.getLiteralPrefixes().toString());
+        assertEquals("[T_ORDER]", matcher.getWholePrefixes().toString());
+    }
+
+    public void testNoLiteralPrefixes() {
+        matcher.addGlob("T_ORDER*");
+        matcher.addRegex("(A|B)_HIST");
+        assertNull(matcher.getLiteralPrefixes());
+    }
+
+    public void testLiteralPrefixOfRegexDropsOptionalCharacter() {
+        assertEquals("T_ORDE", TableNameMatcher.literalPrefixOf("T_ORDER?S"));
+        assertEquals("T_", TableNameMatcher.literalPrefixOf("T_\\d+"));
+        assertNull(TableNameMatcher.literalPrefixOf("T*"));
+        assertNull(TableNameMatcher.literalPrefixOf("T_A|T_B"));
+    }
+}
@@ -41,6 +41,27 @@ public class TableTest extends TestCase {
         assertEquals(columnB, t.findColumn("b"));
     }
 
+    public void testFindIndexPrefersExactName() {
+        Table t = new Table("whatever", Table.Type.TABLE);
+        Index longer = new Index("idx_ab", false);
+        Index exact = new Index("idx_a", false);
+        t.addIndex(longer);
+        t.addIndex(exact);
+        assertSame(exact, t.findIndex("idx_a"));
+        assertSame(longer, t.findIndex("idx_ab"));
+        assertSame("prefix match", longer, t.findIndex("idx"));
+        assertNull(t.index("idx"));
+    }
+
+    public void testIndiciesInOrderAdded() {
+        Table t = new Table("whatever", Table.Type.TABLE);
+        for (String name : new String[] { "z", "a", "m", "b" }) {
+            t.addIndex(new Index(name, false));
+        }
+        assertEquals("z", t.indicies().get(0).name());
+        assertEquals("b", t.indicies().get(3).name());
+    }
+
     public void testAddingNonexistentColumnThrowsException() {
         try {
             Table t = new Table("", Table.Type.TABLE);
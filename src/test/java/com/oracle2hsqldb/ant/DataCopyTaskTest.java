@@ -0,0 +1,245 @@
+/*
+ * Schemamule, a library for automating database schema tasks
+ * Copyright (C) 2006, Moses M. Hohman and Rhett Sutphin
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St., 5th Floor, Boston, MA  02110-1301
+
+ * To contact the authors, send email to:
+ * { mmhohman OR rsutphin } AT sourceforge DOT net
+ */
+
+package com.oracle2hsqldb.ant;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import junit.framework.TestCase;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
+
+public class DataCopyTaskTest extends TestCase {
+    private Project project = new Project();
+    private DataCopyTask task = new DataCopyTask();
+
+    protected void setUp() throws Exception {
+        task.setProject(project);
+    }
+
+    public void testExecuteThrowsBuildExceptionIfFetchsizeLessThanOne() throws URISyntaxException {
+        task.addConfiguredTo(createSchemaParams("datacopy_to"));
+        task.addConfiguredFrom(createSchemaParams("datacopy_from"));
+        task.setFetchSize(0);
+        try {
+            task.execute();
+            fail("Should have thrown BuildException");
+        } catch (BuildException expected) {
+            assertEquals("fetchsize argument must be >= 1", expected.getMessage());
+        }
+    }
+
+    public void testExecuteThrowsBuildExceptionIfToNotAdded() throws URISyntaxException {
+        task.addConfiguredFrom(createSchemaParams("datacopy_from"));
+        try {
+            task.execute();
+            fail("Should have thrown BuildException");
+        } catch (BuildException expected) {
+            assertEquals("to subelement is required", expected.getMessage());
+        }
+    }
+
+    public void testSubsetThrowsBuildExceptionWithoutWhereOrSample() {
+        SubsetParams subset = new SubsetParams();
+        subset.setTable("T_BOOKS");
+        try {
+            task.addConfiguredSubset(subset);
+            fail("Should have thrown BuildException");
+        } catch (BuildException expected) {
+            assertEquals("one of the where and sample arguments is required", expected.getMessage());
+        }
+    }
+
+    public void testSubsetThrowsBuildExceptionIfSampleNotAPercentage() {
+        SubsetParams subset = new SubsetParams();
+        subset.setTable("T_BOOKS");
+        subset.setSample(new Double(100));
+        try {
+            task.addConfiguredSubset(subset);
+            fail("Should have thrown BuildException");
+        } catch (BuildException expected) {
+            assertEquals("sample argument must be > 0 and < 100", expected.getMessage());
+        }
+    }
+
+    public void testCopiesRowsIntoExistingTables() throws IOException, URISyntaxException, SQLException {
+        SchemaParams from = createSchemaParams("datacopy_from");
+        File file = File.createTempFile("datacopy", "");
+        SchemaParams to = createHsqlFileSchemaParams(file);
+        Connection source = from.getConnection();
+        try {
+            Statement stmt = source.createStatement();
+            stmt.execute("CREATE TABLE t_blah (id INTEGER PRIMARY KEY, name VARCHAR(20))");
+            for (int i = 0; i < 10; i++) {
+                stmt.execute("INSERT INTO t_blah VALUES (" + i + ", 'blah " + i + "')");
+            }
+            executeAndClose(to, "CREATE TABLE t_blah (id INTEGER PRIMARY KEY, name VARCHAR(20))");
+
+            task.addConfiguredTo(to);
+            task.addConfiguredFrom(from);
+            task.setBatchSize(3);
+            task.execute();
+
+            assertFalse("to was not shut down and checkpointed", new File(file.getPath() + ".log").exists());
+            assertFalse("foreign keys read though nothing needed them", from.isForeignKeys());
+            Connection target = to.getConnection();
+            try {
+                ResultSet rows = target.createStatement().executeQuery("SELECT COUNT(*), MAX(name) FROM t_blah");
+                assertTrue(rows.next());
+                assertEquals(10, rows.getInt(1));
+                assertEquals("blah 9", rows.getString(2));
+            } finally {
+                target.createStatement().execute("SHUTDOWN");
+            }
+        } finally {
+            source.createStatement().execute("SHUTDOWN");
+        }
+    }
+
+    public void testCopiesConcurrentlyIntoTargetWithForeignKeys() throws IOException, URISyntaxException, SQLException {
+        SchemaParams from = createSchemaParams("datacopy_fk_from");
+        File file = File.createTempFile("datacopy", "");
+        SchemaParams to = createHsqlFileSchemaParams(file);
+        Connection source = from.getConnection();
+        try {
+            // T_BOOKS sorts before the table it references
+            String[] ddl = {
+                "CREATE TABLE t_publishers (id INTEGER PRIMARY KEY, name VARCHAR(40))",
+                "CREATE TABLE t_books (id INTEGER PRIMARY KEY, publisher_id INTEGER NOT NULL, " +
+                    "CONSTRAINT fk_book_publisher FOREIGN KEY (publisher_id) REFERENCES t_publishers)"
+            };
+            Statement stmt = source.createStatement();
+            for (String sql : ddl) {
+                stmt.execute(sql);
+                executeAndClose(to, sql);
+            }
+            // every book is by the last publisher, committed long after the first batch of books if
+            // both tables were copied at once
+            for (int i = 0; i < 500; i++) {
+                stmt.execute("INSERT INTO t_publishers VALUES (" + i + ", 'publisher " + i + "')");
+            }
+            for (int i = 0; i < 500; i++) {
+                stmt.execute("INSERT INTO t_books VALUES (" + i + ", 499)");
+            }
+
+            task.addConfiguredTo(to);
+            task.addConfiguredFrom(from);
+            task.setThreads(2);
+            task.setParentsFirst(true);
+            task.setBatchSize(5);
+            task.setRetries(0);
+            task.execute();
+
+            Connection target = to.getConnection();
+            try {
+                ResultSet rows = target.createStatement().executeQuery("SELECT COUNT(*) FROM t_books");
+                assertTrue(rows.next());
+                assertEquals(500, rows.getInt(1));
+            } finally {
+                target.createStatement().execute("SHUTDOWN");
+            }
+        } finally {
+            source.createStatement().execute("SHUTDOWN");
+        }
+    }
+
+    public void testSubsetCopiesTheRowsItReferences() throws IOException, URISyntaxException, SQLException {
+        // foreign keys are not asked for, the task reads them anyway
+        SchemaParams from = createSchemaParams("datacopy_subset_from");
+        File file = File.createTempFile("datacopy", "");
+        SchemaParams to = createHsqlFileSchemaParams(file);
+        Connection source = from.getConnection();
+        try {
+            String[] ddl = {
+                "CREATE TABLE t_publishers (id INTEGER PRIMARY KEY, name VARCHAR(40))",
+                "CREATE TABLE t_books (id INTEGER PRIMARY KEY, publisher_id INTEGER NOT NULL, " +
+                    "CONSTRAINT fk_book_publisher FOREIGN KEY (publisher_id) REFERENCES t_publishers)"
+            };
+            Statement stmt = source.createStatement();
+            for (String sql : ddl) {
+                stmt.execute(sql);
+                executeAndClose(to, sql);
+            }
+            for (int i = 0; i < 3; i++) {
+                stmt.execute("INSERT INTO t_publishers VALUES (" + i + ", 'publisher " + i + "')");
+            }
+            for (int i = 0; i < 10; i++) {
+                stmt.execute("INSERT INTO t_books VALUES (" + i + ", " + (i % 3) + ")");
+            }
+
+            SubsetParams subset = new SubsetParams();
+            subset.setTable("T_BOOKS");
+            subset.setWhere("id IN (1, 4)");
+            task.addConfiguredTo(to);
+            task.addConfiguredFrom(from);
+            task.addConfiguredSubset(subset);
+            task.execute();
+
+            Connection target = to.getConnection();
+            try {
+                ResultSet rows = target.createStatement().executeQuery("SELECT COUNT(*) FROM t_books");
+                assertTrue(rows.next());
+                assertEquals(2, rows.getInt(1));
+                rows = target.createStatement().executeQuery("SELECT id FROM t_publishers");
+                assertTrue(rows.next());
+                assertEquals("both books are by publisher 1", 1, rows.getInt(1));
+                assertFalse(rows.next());
+            } finally {
+                target.createStatement().execute("SHUTDOWN");
+            }
+        } finally {
+            source.createStatement().execute("SHUTDOWN");
+        }
+    }
+
+    private void executeAndClose(SchemaParams params, String sql) throws SQLException {
+        Connection connection = params.getConnection();
+        try {
+            connection.createStatement().execute(sql);
+        } finally {
+            connection.close();
+        }
+    }
+
+    private SchemaParams createHsqlFileSchemaParams(File file) throws URISyntaxException {
+        SchemaParams params = createSchemaParams("unused");
+        params.setUri("jdbc:hsqldb:file:/" + file.getAbsolutePath().replace('\\', '/'));
+        return params;
+    }
+
+    private SchemaParams createSchemaParams(String alias) throws URISyntaxException {
+        SchemaParams params = new SchemaParams();
+        params.setProject(project);
+        params.setTask(task);
+        params.setUri("jdbc:hsqldb:mem:" + alias);
+        params.setUsername("sa");
+        params.setPassword("");
+        return params;
+    }
+}
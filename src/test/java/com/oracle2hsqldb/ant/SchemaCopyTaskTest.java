@@ -149,6 +149,24 @@ public class SchemaCopyTaskTest extends TestCase {
         verify(to);
     }
 
+    public void testStreamsSchemas() throws IOException, URISyntaxException, SQLException {
+        SchemaParams to = createHsqlFileSchemaParams();
+        SchemaParams from1 = createHsqlSchemaParams("stream1");
+        SchemaParams from2 = createHsqlSchemaParams("stream2");
+
+        task.setStreaming(true);
+        task.addConfiguredTo(to);
+        task.addConfiguredFrom(from1);
+        task.addConfiguredFrom(from2);
+
+        executeOnSchema(from1, "CREATE TABLE t_blah (id INTEGER)");
+        executeOnSchema(from2, "CREATE TABLE t_hooey (name VARCHAR(32))");
+
+        task.execute();
+
+        verify(to);
+    }
+
     public void testExecuteTearsdownTo() throws IOException, URISyntaxException, SQLException {
         SchemaParams mockTo = EasyMock.createMock(SchemaParams.class);
         SchemaParams from = createHsqlSchemaParams();
@@ -170,6 +188,36 @@ public class SchemaCopyTaskTest extends TestCase {
         EasyMock.verify(mockTo);
     }
 
+    public void testWritesHsqldbFilesOffline() throws IOException, URISyntaxException, SQLException {
+        SchemaParams to = createHsqlFileSchemaParams();
+        SchemaParams from1 = createHsqlSchemaParams("offline1");
+        SchemaParams from2 = createHsqlSchemaParams("offline2");
+
+        task.setOffline(true);
+        task.addConfiguredTo(to);
+        task.addConfiguredFrom(from1);
+        task.addConfiguredFrom(from2);
+
+        executeOnSchema(from1, "CREATE TABLE t_blah (id INTEGER)");
+        executeOnSchema(from2, "CREATE TABLE t_hooey (name VARCHAR(32))");
+
+        task.execute();
+
+        verify(to);
+    }
+
+    public void testOfflineRequiresHsqldbFileDatabase() throws IOException, URISyntaxException {
+        task.setOffline(true);
+        task.addConfiguredTo(createHsqlSchemaParams());
+        task.addConfiguredFrom(createSchemaParams());
+        try {
+            task.execute();
+            fail("Should have thrown BuildException");
+        } catch (BuildException expected) {
+            assertEquals("offline requires the to uri to name an HSQLDB file database", expected.getMessage());
+        }
+    }
+
     private void verify(SchemaParams to) throws SQLException {
         to.setProject(project); // for logging
         Schema schema = to.readSchema();
@@ -0,0 +1,132 @@
+/*
+ * Schemamule, a library for automating database schema tasks
+ * Copyright (C) 2006, Moses M. Hohman and Rhett Sutphin
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St., 5th Floor, Boston, MA  02110-1301
+
+ * To contact the authors, send email to:
+ * { mmhohman OR rsutphin } AT sourceforge DOT net
+ */
+package com.oracle2hsqldb.ant;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
+
+import com.oracle2hsqldb.dialect.HSQLDialect;
+
+public class SchemaExportTaskTest extends TestCase {
+    private static final int TABLES = 300;
+
+    private Project project = new Project();
+    private File sequential;
+    private File concurrent;
+
+    protected void setUp() throws Exception {
+        sequential = File.createTempFile("export", ".sql");
+        concurrent = File.createTempFile("export", ".sql");
+    }
+
+    protected void tearDown() throws Exception {
+        sequential.delete();
+        concurrent.delete();
+    }
+
+    public void testConcurrentExportIsSameAsSequential() throws Exception {
+        Connection conn = createSchemaParams().getConnection();
+        try {
+            Statement stmt = conn.createStatement();
+            // each table references the one before it, so the export order differs from the name order
+            stmt.execute("CREATE TABLE t_0 (id INTEGER PRIMARY KEY, name VARCHAR(20))");
+            for (int i = 1; i < TABLES; i++) {
+                stmt.execute("CREATE TABLE t_" + i + " (id INTEGER PRIMARY KEY, parent_id INTEGER, code VARCHAR(10), " +
+                        "CONSTRAINT uk_" + i + " UNIQUE (code), " +
+                        "CONSTRAINT fk_" + i + " FOREIGN KEY (parent_id) REFERENCES t_" + (i - 1) + ")");
+            }
+            stmt.execute("CREATE SEQUENCE seq_export START WITH 5");
+
+            export(sequential, 1);
+            export(concurrent, 4);
+        } finally {
+            conn.createStatement().execute("SHUTDOWN");
+        }
+
+        byte[] expected = read(sequential);
+        assertTrue("nothing exported", new String(expected).contains("CREATE TABLE T_" + (TABLES - 1)));
+        assertTrue("output differs", Arrays.equals(expected, read(concurrent)));
+    }
+
+    public void testRenderThreadsMustBePositive() throws URISyntaxException {
+        SchemaExportTask task = createTask(sequential);
+        task.setRenderThreads(0);
+        try {
+            task.validate();
+            fail("Should have thrown BuildException");
+        } catch (BuildException expected) {
+            assertEquals("renderthreads argument must be >= 1", expected.getMessage());
+        }
+    }
+
+    private void export(File file, int renderThreads) throws URISyntaxException {
+        SchemaExportTask task = createTask(file);
+        task.setRenderThreads(renderThreads);
+        task.execute();
+    }
+
+    private SchemaExportTask createTask(File file) throws URISyntaxException {
+        SchemaExportTask task = new SchemaExportTask();
+        task.setProject(project);
+        task.setDialectClass(HSQLDialect.class.getName());
+        task.setFile(file);
+        SchemaParams from = createSchemaParams();
+        from.setTask(task);
+        task.addConfiguredFrom(from);
+        return task;
+    }
+
+    private SchemaParams createSchemaParams() throws URISyntaxException {
+        SchemaParams params = new SchemaParams();
+        params.setProject(project);
+        params.setUri("jdbc:hsqldb:mem:export");
+        params.setUsername("sa");
+        params.setPassword("");
+        params.setSchema("PUBLIC");
+        return params;
+    }
+
+    private static byte[] read(File file) throws IOException {
+        byte[] result = new byte[(int) file.length()];
+        InputStream in = new FileInputStream(file);
+        try {
+            int read = 0;
+            while (read < result.length) {
+                read += in.read(result, read, result.length - read);
+            }
+        } finally {
+            in.close();
+        }
+        return result;
+    }
+}
@@ -22,17 +22,23 @@
 
 package com.oracle2hsqldb.ant;
 
+import java.io.File;
 import java.net.URISyntaxException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 
 import junit.framework.TestCase;
 
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Task;
 import org.easymock.EasyMock;
 
+import com.oracle2hsqldb.Column;
+import com.oracle2hsqldb.SchemaListener;
+import com.oracle2hsqldb.Table;
 import com.oracle2hsqldb.dialect.HSQLDialect;
 import com.oracle2hsqldb.dialect.Oracle9Dialect;
 
@@ -230,6 +236,24 @@ public class SchemaParamsTest extends TestCase {
         }
     }
 
+    public void testHsqldbFileOfFileUris() throws URISyntaxException {
+        params.setUri("jdbc:hsqldb:file:/tmp/testing/db;shutdown=true");
+        assertEquals(new File("/tmp/testing/db"), params.getHsqldbFile());
+        params.setUri("jdbc:hsqldb:/tmp/testing/db");
+        assertEquals(new File("/tmp/testing/db"), params.getHsqldbFile());
+    }
+
+    public void testNoHsqldbFileForOtherUris() throws URISyntaxException {
+        params.setUri("jdbc:hsqldb:mem:whatever");
+        assertNull(params.getHsqldbFile());
+        params.setUri("jdbc:hsqldb:hsql://localhost/db");
+        assertNull(params.getHsqldbFile());
+        params.setUri("jdbc:hsqldb:.");
+        assertNull(params.getHsqldbFile());
+        params.setUri("jdbc:oracle:thin:@localhost:1521:db");
+        assertNull(params.getHsqldbFile());
+    }
+
     public void testTeardownCallsExecutesShutdownSql() throws SQLException, URISyntaxException {
         StatementBatch mock = EasyMock.createMock(StatementBatch.class);
 
@@ -242,6 +266,31 @@ public class SchemaParamsTest extends TestCase {
         EasyMock.verify(mock);
     }
 
+    public void testWritesTablesAboveCachedTableThresholdAsCached() throws SQLException, URISyntaxException {
+        StatementBatch mock = EasyMock.createMock(StatementBatch.class);
+        params.setUri("jdbc:hsqldb:mem:whatever");
+        params.setTask(new Task() {});
+        params.setCachedTableThreshold(1000000);
+        mock.executeUpdate("CREATE CACHED TABLE T_BIG (\n\tID INTEGER\n)");
+        mock.executeUpdate("CREATE TABLE T_SMALL (\n\tID INTEGER\n)");
+        mock.executeUpdate("CREATE TABLE T_UNANALYZED (\n\tID INTEGER\n)");
+        EasyMock.replay(mock);
+
+        SchemaListener writer = params.writeSchema(null, mock);
+        writer.tableRead(createTable("T_BIG", 100000L, 20));
+        writer.tableRead(createTable("T_SMALL", 100L, 20));
+        writer.tableRead(createTable("T_UNANALYZED", null, null));
+
+        EasyMock.verify(mock);
+    }
+
+    private static Table createTable(String name, Long rowCount, Integer averageRowLength) {
+        Table table = new Table(name);
+        table.addColumn(new Column("ID", Types.INTEGER, 0, 0, true));
+        table.statistics(rowCount, averageRowLength);
+        return table;
+    }
+
     public void testAddTableThrowsBuildExceptionIfTableIsInvalid() {
         try {
             params.addConfiguredTable(new TableParams());
@@ -251,6 +300,36 @@ public class SchemaParamsTest extends TestCase {
         }
     }
 
+    public void testShouldReadTableMatchingIncludedPattern() {
+        TableParams table = new TableParams();
+        table.setPattern("T_ORDER*");
+        params.addConfiguredTable(table);
+        assertFalse(params.isAllTables());
+        assertTrue(params.shouldReadTable("T_ORDER_LINES"));
+        assertFalse(params.shouldReadTable("T_CUSTOMERS"));
+        assertEquals("[T_ORDER]", params.getIncludedPrefixes().toString());
+    }
+
+    public void testShouldNotReadTableMatchingExcludedRegex() {
+        TableParams table = new TableParams();
+        table.setRegex(".*_(HIST|AUDIT)");
+        table.setExclude(true);
+        params.addConfiguredTable(table);
+        assertFalse(params.shouldReadTable("T_ORDER_HIST"));
+        assertTrue(params.shouldReadTable("T_ORDER"));
+    }
+
+    public void testAddTableThrowsBuildExceptionIfNameAndPatternGiven() {
+        TableParams table = createTableParams("T_BLAH");
+        table.setPattern("T_*");
+        try {
+            params.addConfiguredTable(table);
+            fail("Should have thrown BuildException");
+        } catch (BuildException expected) {
+            assertEquals("only one of the name, pattern and regex arguments is allowed", expected.getMessage());
+        }
+    }
+
     private TableParams createTableParams(String name) {
         return createTableParams(name, false);
     }
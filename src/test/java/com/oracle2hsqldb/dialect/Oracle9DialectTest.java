@@ -0,0 +1,113 @@
+/*
+ * Schemamule, a library for automating database schema tasks
+ * Copyright (C) 2006, Moses M. Hohman and Rhett Sutphin
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St., 5th Floor, Boston, MA  02110-1301
+
+ * To contact the authors, send email to:
+ * { mmhohman OR rsutphin } AT sourceforge DOT net
+ */
+
+package com.oracle2hsqldb.dialect;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.oracle2hsqldb.Table;
+import com.oracle2hsqldb.TableChunk;
+import com.oracle2hsqldb.ant.SchemaParams;
+import com.oracle2hsqldb.ant.TableParams;
+
+public class Oracle9DialectTest extends TestCase {
+    public void testInList() {
+        List<Object> args = new ArrayList<Object>();
+        assertEquals("(table_name IN (?, ?))", Oracle9Dialect.inList("table_name", Arrays.asList("T_A", "T_B"), false, args));
+        assertEquals(Arrays.asList("T_A", "T_B"), args);
+    }
+
+    public void testNotInList() {
+        List<Object> args = new ArrayList<Object>();
+        assertEquals("(table_name NOT IN (?))", Oracle9Dialect.inList("table_name", Arrays.asList("T_A"), true, args));
+    }
+
+    public void testInListIsSplitAtOracleLimit() {
+        List<String> names = new ArrayList<String>();
+        for (int i = 0; i < 1001; i++) {
+            names.add("T_" + i);
+        }
+        List<Object> args = new ArrayList<Object>();
+        String sql = Oracle9Dialect.inList("table_name", names, false, args);
+        assertTrue(sql, sql.endsWith("?) OR table_name IN (?))"));
+        assertEquals(1001, args.size());
+
+        sql = Oracle9Dialect.inList("table_name", names, true, new ArrayList<Object>());
+        assertTrue(sql, sql.endsWith("?) AND table_name NOT IN (?))"));
+    }
+
+    public void testFilterPredicatePushesIncludedNamesAndPrefixes() {
+        SchemaParams filter = new SchemaParams();
+        filter.addConfiguredTable(createTableParams("T_A", null, false));
+        filter.addConfiguredTable(createTableParams(null, "T_ORDER_*", false));
+        List<Object> args = new ArrayList<Object>();
+        assertEquals("((table_name IN (?)) OR table_name LIKE ? ESCAPE '\\')", Oracle9Dialect.filterPredicate("table_name", filter, args));
+        assertEquals(Arrays.asList("T_A", "T\\_ORDER\\_%"), args);
+    }
+
+    public void testFilterPredicatePushesExcludedPrefixes() {
+        SchemaParams filter = new SchemaParams();
+        filter.addConfiguredTable(createTableParams(null, "BIN$*", true));
+        List<Object> args = new ArrayList<Object>();
+        assertEquals("(table_name NOT LIKE ? ESCAPE '\\')", Oracle9Dialect.filterPredicate("table_name", filter, args));
+        assertEquals(Arrays.asList("BIN$%"), args);
+    }
+
+    public void testFilterPredicateIsNotPushedForPatternWithoutPrefix() {
+        SchemaParams filter = new SchemaParams();
+        filter.addConfiguredTable(createTableParams("T_A", null, false));
+        filter.addConfiguredTable(createTableParams(null, "*_HIST", false));
+        assertNull(Oracle9Dialect.filterPredicate("table_name", filter, new ArrayList<Object>()));
+    }
+
+    public void testRowidChunksGroupConsecutiveExtents() {
+        List<String[]> extents = new ArrayList<String[]>();
+        List<Long> blocks = new ArrayList<Long>();
+        long[] sizes = { 8, 8, 128, 256, 1024, 8 };
+        for (int i = 0; i < sizes.length; i++) {
+            extents.add(new String[] { "first" + i, "last" + i });
+            blocks.add(sizes[i]);
+        }
+        List<TableChunk> chunks = Oracle9Dialect.rowidChunks(new Table("T_BIG"), extents, blocks, 4);
+        assertEquals(3, chunks.size());
+        assertEquals("ROWID BETWEEN CHARTOROWID(?) AND CHARTOROWID(?)", chunks.get(0).condition());
+        assertEquals(Arrays.<Object>asList("first0", "last3"), chunks.get(0).args());
+        assertEquals(Arrays.<Object>asList("first4", "last4"), chunks.get(1).args());
+        assertEquals("the leftover extent", Arrays.<Object>asList("first5", "last5"), chunks.get(2).args());
+    }
+
+    public void testSampleClauseIsSeeded() {
+        assertEquals("SAMPLE (0.5) SEED (42)", new Oracle9Dialect().getSampleClause(0.5, 42));
+    }
+
+    private TableParams createTableParams(String name, String pattern, boolean exclude) {
+        TableParams result = new TableParams();
+        result.setName(name);
+        result.setPattern(pattern);
+        result.setExclude(exclude);
+        return result;
+    }
+}